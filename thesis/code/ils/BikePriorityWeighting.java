@@ -3,7 +3,9 @@ package com.graphhopper.routing.ils;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.PriorityCode;
 import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIteratorState;
+import com.sun.istack.internal.NotNull;
 
 import static com.graphhopper.routing.weighting.PriorityWeighting.KEY;
 
@@ -16,6 +18,15 @@ public class BikePriorityWeighting extends AbstractWeighting {
         super(encoder);
     }
 
+    /**
+     * Returns whether the specified weighting gives the unmodified scores of this class. Scores precomputed per graph,
+     * like those of the {@link com.graphhopper.routing.ils.ls.ArcCatalog} and the
+     * {@link com.graphhopper.routing.ils.search.ShortcutScoreIndex}, only match such a weighting.
+     */
+    public static boolean isPlain(@NotNull Weighting weighting) {
+        return weighting.getClass() == BikePriorityWeighting.class;
+    }
+
     @Override
     public double getMinWeight(double distance) {
         return PriorityCode.WORST.getValue();
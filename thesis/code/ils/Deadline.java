@@ -0,0 +1,77 @@
+package com.graphhopper.routing.ils;
+
+import com.graphhopper.util.PMap;
+import com.sun.istack.internal.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall clock time limit of a request. The ILS algorithms check it between iterations and inside their long search
+ * loops and return the best solution found so far once it has passed.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+    private static final long MAX_MILLIS = TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE / 2);
+
+    private final long end; // Value of System.nanoTime() at which the deadline passes
+    private final boolean limited;
+
+    private Deadline(long end, boolean limited) {
+        this.end = end;
+        this.limited = limited;
+    }
+
+    /**
+     * Returns a deadline which never passes.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * Starts a deadline which passes after the specified time.
+     *
+     * @param millis Time limit in milliseconds. Values of zero or less mean no limit.
+     * @return Deadline
+     */
+    public static Deadline after(long millis) {
+        if(millis <= 0 || millis >= MAX_MILLIS) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), true);
+    }
+
+    /**
+     * Starts a deadline for the time limit in the request hints.
+     *
+     * @param params Parameters map.
+     * @return Deadline or {@link #none()} if the hints don't set a time limit.
+     */
+    public static Deadline start(@NotNull PMap params) {
+        return after(params.getLong(IlsParameters.TIME_LIMIT, IlsParameters.DEFAULT_TIME_LIMIT));
+    }
+
+    /**
+     * Returns whether this deadline can pass at all.
+     */
+    public boolean isLimited() {
+        return limited;
+    }
+
+    public boolean isExpired() {
+        return limited && System.nanoTime() - end >= 0;
+    }
+
+    /**
+     * Returns the time left until the deadline passes.
+     *
+     * @return Milliseconds, zero once the deadline has passed or {@link Long#MAX_VALUE} if it never passes.
+     */
+    public long getRemainingMillis() {
+        if(!limited) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()));
+    }
+}
@@ -4,5 +4,9 @@ import com.graphhopper.routing.RoutingAlgorithm;
 
 public interface IlsAlgorithm extends RoutingAlgorithm {
 
+    /**
+     * Returns the progress of the search, one entry per iteration that was run. The time limit or the termination
+     * policy may stop the search early, so there can be fewer entries than the maximum number of iterations.
+     */
     Iteration[] getIterationInfo();
 }
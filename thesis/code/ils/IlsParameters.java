@@ -0,0 +1,90 @@
+package com.graphhopper.routing.ils;
+
+/**
+ * Request hints understood by the ILS routing algorithms in addition to the ones defined in
+ * {@link com.graphhopper.util.Parameters.Routing}.
+ */
+public final class IlsParameters {
+
+    private IlsParameters() {
+    }
+
+    /**
+     * Maximum number of full shortest paths memoized per request.
+     */
+    public static final String PATH_CACHE_SIZE = "ils.path_cache_size";
+    public static final int DEFAULT_PATH_CACHE_SIZE = 10_000;
+
+    /**
+     * Maximum number of shortest path distances memoized per request.
+     */
+    public static final String DISTANCE_CACHE_SIZE = "ils.distance_cache_size";
+    public static final int DEFAULT_DISTANCE_CACHE_SIZE = 200_000;
+
+    /**
+     * Number of landmarks of the {@link com.graphhopper.routing.ils.search.LandmarkTable} built for a graph.
+     */
+    public static final String LANDMARKS = "ils.landmarks";
+    public static final int DEFAULT_LANDMARKS = 16;
+
+    /**
+     * Largest number of nodes a graph may have to get a {@link com.graphhopper.routing.ils.search.DistanceMatrix}.
+     */
+    public static final String DISTANCE_MATRIX_MAX_NODES = "ils.distance_matrix.max_nodes";
+    public static final int DEFAULT_DISTANCE_MATRIX_MAX_NODES = 5_000;
+
+    /**
+     * Name of the {@link MultiStartIls} routing algorithm.
+     */
+    public static final String MULTI_START_ALGORITHM = "ils_multi_start";
+
+    /**
+     * Number of parallel runs of the {@link MultiStartIls} algorithm. Defaults to the number of processors.
+     */
+    public static final String MULTI_START_RUNS = "ils.multi_start.runs";
+
+    /**
+     * Maximum number of threads evaluating the arcs of a Candidate Arc Set at once. Defaults to the number of
+     * processors.
+     */
+    public static final String CAS_THREADS = "ils.cas.threads";
+
+    /**
+     * Minimum number of arcs each thread evaluating a Candidate Arc Set gets. Smaller sets are evaluated on the thread
+     * of the request.
+     */
+    public static final String CAS_MIN_CHUNK_SIZE = "ils.cas.min_chunk_size";
+    public static final int DEFAULT_CAS_MIN_CHUNK_SIZE = 64;
+
+    /**
+     * Wall clock time limit of a request in milliseconds. Once it has passed the algorithms stop and return the best
+     * solution found so far. Zero means no limit.
+     */
+    public static final String TIME_LIMIT = "ils.time_limit";
+    public static final long DEFAULT_TIME_LIMIT = 0;
+
+    /**
+     * Number of iterations without a better score after which the ILS algorithms stop. Zero disables the check.
+     */
+    public static final String STOP_NO_IMPROVEMENT = "ils.stop.no_improvement";
+    public static final int DEFAULT_STOP_NO_IMPROVEMENT = 0;
+
+    /**
+     * Number of iterations over which the improvement of the best score is measured. The ILS algorithms stop once the
+     * relative improvement over the window drops below {@link #STOP_MIN_IMPROVEMENT}. Zero disables the check.
+     */
+    public static final String STOP_WINDOW = "ils.stop.window";
+    public static final int DEFAULT_STOP_WINDOW = 0;
+
+    /**
+     * Smallest relative improvement of the best score over {@link #STOP_WINDOW} iterations to go on.
+     */
+    public static final String STOP_MIN_IMPROVEMENT = "ils.stop.min_improvement";
+    public static final double DEFAULT_STOP_MIN_IMPROVEMENT = 0.01;
+
+    /**
+     * Score after which the ILS algorithms stop. Zero disables the check.
+     */
+    public static final String STOP_TARGET_SCORE = "ils.stop.target_score";
+    public static final double DEFAULT_STOP_TARGET_SCORE = 0;
+}
@@ -0,0 +1,93 @@
+package com.graphhopper.routing.ils;
+
+import com.graphhopper.routing.ils.ls.ArcIndex;
+import com.graphhopper.routing.ils.search.DistanceMatrix;
+import com.graphhopper.routing.ils.search.LandmarkTable;
+import com.graphhopper.routing.ils.search.ShortcutEdgeIndex;
+import com.graphhopper.routing.ils.search.ShortcutScoreIndex;
+
+/**
+ * Per graph data precomputed for the ILS routing algorithms. It is built once after the graph has been loaded and is
+ * shared by all requests on that graph. Every part is optional and algorithms fall back to doing the work per request
+ * if a part is missing.
+ */
+public class IlsStorage {
+
+    private ShortcutEdgeIndex shortcutEdgeIndex;
+    private ShortcutScoreIndex shortcutScoreIndex;
+    private LandmarkTable landmarkTable;
+    private DistanceMatrix distanceMatrix;
+    private ArcIndex arcIndex;
+
+    /**
+     * Returns the index of the original edges covered by each shortcut of the Contraction Hierarchy.
+     *
+     * @return Index or null if it wasn't built.
+     */
+    public ShortcutEdgeIndex getShortcutEdgeIndex() {
+        return shortcutEdgeIndex;
+    }
+
+    public IlsStorage setShortcutEdgeIndex(ShortcutEdgeIndex shortcutEdgeIndex) {
+        this.shortcutEdgeIndex = shortcutEdgeIndex;
+        return this;
+    }
+
+    /**
+     * Returns the bike priority score of each shortcut of the Contraction Hierarchy. Only matches weightings accepted
+     * by {@link BikePriorityWeighting#isPlain}.
+     *
+     * @return Index or null if it wasn't built.
+     */
+    public ShortcutScoreIndex getShortcutScoreIndex() {
+        return shortcutScoreIndex;
+    }
+
+    public IlsStorage setShortcutScoreIndex(ShortcutScoreIndex shortcutScoreIndex) {
+        this.shortcutScoreIndex = shortcutScoreIndex;
+        return this;
+    }
+
+    /**
+     * Returns the landmark distances of the base graph used for lower bounding path costs.
+     *
+     * @return Table or null if it wasn't built.
+     */
+    public LandmarkTable getLandmarkTable() {
+        return landmarkTable;
+    }
+
+    public IlsStorage setLandmarkTable(LandmarkTable landmarkTable) {
+        this.landmarkTable = landmarkTable;
+        return this;
+    }
+
+    /**
+     * Returns the all-pairs distances of the base graph. Only built for small graphs.
+     *
+     * @return Matrix or null if it wasn't built.
+     */
+    public DistanceMatrix getDistanceMatrix() {
+        return distanceMatrix;
+    }
+
+    public IlsStorage setDistanceMatrix(DistanceMatrix distanceMatrix) {
+        this.distanceMatrix = distanceMatrix;
+        return this;
+    }
+
+    /**
+     * Returns the spatial index of the edges of the base graph used to fetch arcs around the pruning ellipse. The index
+     * also gives access to the {@link com.graphhopper.routing.ils.ls.ArcCatalog} it was built over.
+     *
+     * @return Index or null if it wasn't built.
+     */
+    public ArcIndex getArcIndex() {
+        return arcIndex;
+    }
+
+    public IlsStorage setArcIndex(ArcIndex arcIndex) {
+        this.arcIndex = arcIndex;
+        return this;
+    }
+}
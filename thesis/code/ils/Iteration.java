@@ -1,12 +1,49 @@
 package com.graphhopper.routing.ils;
 
 public class Iteration {
+
+    /**
+     * Reason an algorithm stopped after an iteration.
+     */
+    public enum Stop {
+        /**
+         * The algorithm went on with another iteration.
+         */
+        NONE,
+        /**
+         * The maximum number of iterations was reached.
+         */
+        MAX_ITERATIONS,
+        /**
+         * The time limit of the request passed, the iteration may have been cut short.
+         */
+        DEADLINE,
+        /**
+         * The best score didn't improve for the configured number of iterations.
+         */
+        NO_IMPROVEMENT,
+        /**
+         * The best score improved by less than the configured amount over the configured window.
+         */
+        STAGNATION,
+        /**
+         * The score reached the configured target.
+         */
+        TARGET_SCORE
+    }
+
     private final double score;
     private final double time;
+    private final Stop stop;
 
     public Iteration(double score, double time) {
+        this(score, time, Stop.NONE);
+    }
+
+    public Iteration(double score, double time, Stop stop) {
         this.score = score;
         this.time = time;
+        this.stop = stop;
     }
 
     public double getScore() {
@@ -16,4 +53,11 @@ public class Iteration {
     public double getTime() {
         return time;
     }
+
+    /**
+     * Returns why the algorithm stopped after this iteration or {@link Stop#NONE} if it wasn't the last one.
+     */
+    public Stop getStop() {
+        return stop;
+    }
 }
@@ -0,0 +1,189 @@
+package com.graphhopper.routing.ils;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Routing algorithm which runs several independently seeded instances of a randomized ILS algorithm in parallel and
+ * returns the found path with the highest score. Only useful for the randomized algorithms, VVA always finds the same
+ * route.
+ * <p>
+ * The seed of every run is derived from the seed of the request by {@link SplittableRandom#split()}, so the result is
+ * reproducible for a fixed request seed. Every instance is created on the thread which runs it, so the pooled search
+ * workspaces of an instance never leave that thread.
+ * <p>
+ * A time limit applies to the whole request. Every run gets the time which is left when it starts, so runs queued
+ * behind others don't overshoot it.
+ * <p>
+ * Runs block while their Candidate Arc Sets are evaluated, so they must not run on a pool the evaluation is submitted
+ * to, like the common fork join pool. By default every request gets its own fixed pool with one thread per run. The
+ * runs already keep the processors busy, so each of them evaluates its CAS on its own thread.
+ */
+public class MultiStartIls implements IlsAlgorithm {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Function<PMap, IlsAlgorithm> factory;
+    private final PMap params;
+    private final ExecutorService pool; // Null if every request creates its own pool
+    private final int RUNS;
+    private final long SEED;
+
+    private Iteration[] iterations = new Iteration[0];
+    private boolean alreadyRun = false;
+
+    /**
+     * Creates a multi start instance which runs on a fixed pool of its own.
+     *
+     * @param factory Creates an ILS instance for the specified parameters.
+     * @param params  Parameters map.
+     */
+    public MultiStartIls(@NotNull Function<PMap, IlsAlgorithm> factory, @NotNull PMap params) {
+        this(factory, params, null);
+    }
+
+    /**
+     * @param factory Creates an ILS instance for the specified parameters.
+     * @param params  Parameters map.
+     * @param pool    Executor the runs are submitted to, must not be used for CAS evaluation. If null a fixed pool is
+     *                created for the request and shut down afterwards.
+     */
+    public MultiStartIls(@NotNull Function<PMap, IlsAlgorithm> factory, @NotNull PMap params,
+                         @Nullable ExecutorService pool) {
+        this.factory = factory;
+        this.params = params;
+        this.pool = pool;
+
+        RUNS = Math.max(1, params.getInt(IlsParameters.MULTI_START_RUNS,
+                Runtime.getRuntime().availableProcessors()));
+        SEED = params.getLong(Parameters.Routing.SEED, System.currentTimeMillis());
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        if(alreadyRun) {
+            throw new IllegalStateException("Create a new instance per call");
+        }
+        alreadyRun = true;
+
+        ExecutorService runPool = pool != null ? pool : Executors.newFixedThreadPool(RUNS);
+        try {
+            return calcBestPath(runPool, from, to);
+        } finally {
+            if(runPool != pool) {
+                runPool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Submits all runs to the specified pool and returns the best path found.
+     */
+    private Path calcBestPath(ExecutorService runPool, int from, int to) {
+        Deadline deadline = Deadline.start(params);
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Future<Run>> futures = new ArrayList<>(RUNS);
+        for(int i = 0; i < RUNS; i++) {
+            PMap runParams = new PMap(params.toMap());
+            runParams.put(Parameters.Routing.SEED, random.split().nextLong());
+            runParams.put(IlsParameters.CAS_THREADS, 1);
+            futures.add(runPool.submit(() -> {
+                if(deadline.isLimited()) {
+                    runParams.put(IlsParameters.TIME_LIMIT, Math.max(1, deadline.getRemainingMillis()));
+                }
+                IlsAlgorithm ils = factory.apply(runParams);
+                return new Run(ils.calcPath(from, to), ils.getIterationInfo());
+            }));
+        }
+
+        Run best = null;
+        try {
+            for(Future<Run> future : futures) {
+                Run run = future.get();
+                if(best == null || run.isBetterThan(best)) {
+                    best = run;
+                }
+            }
+        } catch(InterruptedException | ExecutionException e) {
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            for(Future<Run> future : futures) {
+                future.cancel(true);
+            }
+            throw new IllegalStateException("Multi start ILS run failed!", e);
+        }
+
+        logger.debug("Best of " + RUNS + " runs has score " + best.getScore());
+        iterations = best.iterations;
+        return best.path;
+    }
+
+    @Override
+    public List<Path> calcPaths(int from, int to) {
+        return Collections.singletonList(calcPath(from, to));
+    }
+
+    // Unused
+    @Override
+    public void setMaxVisitedNodes(int numberOfNodes) {
+    }
+
+    @Override
+    public String getName() {
+        return IlsParameters.MULTI_START_ALGORITHM;
+    }
+
+    // Unused
+    @Override
+    public int getVisitedNodes() {
+        return 0;
+    }
+
+    /**
+     * Returns the iterations of the run whose path was returned.
+     */
+    @Override
+    public Iteration[] getIterationInfo() {
+        return iterations;
+    }
+
+    /**
+     * Result of a single run.
+     */
+    private static final class Run {
+        final Path path;
+        final Iteration[] iterations;
+
+        Run(Path path, Iteration[] iterations) {
+            this.path = path;
+            this.iterations = iterations;
+        }
+
+        double getScore() {
+            return path instanceof IlsPath ? ((IlsPath) path).getScore() : 0;
+        }
+
+        boolean isBetterThan(Run other) {
+            if(path.isFound() != other.path.isFound()) {
+                return path.isFound();
+            }
+            return getScore() > other.getScore();
+        }
+    }
+}
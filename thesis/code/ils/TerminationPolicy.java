@@ -0,0 +1,150 @@
+package com.graphhopper.routing.ils;
+
+import com.graphhopper.util.PMap;
+import com.sun.istack.internal.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides when an ILS algorithm has converged and can stop before its maximum number of iterations. The algorithm
+ * passes the score of its solution at the start of every iteration and stops once a reason other than
+ * {@link Iteration.Stop#NONE} is returned. Policies keep state, so every request needs its own instance.
+ */
+public interface TerminationPolicy {
+
+    /**
+     * Policy which never stops the algorithm.
+     */
+    TerminationPolicy NEVER = score -> Iteration.Stop.NONE;
+
+    /**
+     * Checks the score of the current solution.
+     *
+     * @param score Score of the solution at the start of an iteration.
+     * @return Reason to stop or {@link Iteration.Stop#NONE} to go on.
+     */
+    Iteration.Stop update(double score);
+
+    /**
+     * Creates the policies enabled in the request hints. The algorithm stops as soon as any of them says so.
+     *
+     * @param params Parameters map.
+     * @return Policy or {@link #NEVER} if none is enabled.
+     */
+    static TerminationPolicy create(@NotNull PMap params) {
+        List<TerminationPolicy> policies = new ArrayList<>();
+
+        int iterations = params.getInt(IlsParameters.STOP_NO_IMPROVEMENT, IlsParameters.DEFAULT_STOP_NO_IMPROVEMENT);
+        if(iterations > 0) {
+            policies.add(new NoImprovement(iterations));
+        }
+
+        int window = params.getInt(IlsParameters.STOP_WINDOW, IlsParameters.DEFAULT_STOP_WINDOW);
+        if(window > 0) {
+            policies.add(new Stagnation(window,
+                    params.getDouble(IlsParameters.STOP_MIN_IMPROVEMENT, IlsParameters.DEFAULT_STOP_MIN_IMPROVEMENT)));
+        }
+
+        double target = params.getDouble(IlsParameters.STOP_TARGET_SCORE, IlsParameters.DEFAULT_STOP_TARGET_SCORE);
+        if(target > 0) {
+            policies.add(new TargetScore(target));
+        }
+
+        if(policies.isEmpty()) {
+            return NEVER;
+        }
+        if(policies.size() == 1) {
+            return policies.get(0);
+        }
+        return score -> {
+            // Every policy has to see every score to keep its state up to date
+            Iteration.Stop result = Iteration.Stop.NONE;
+            for(TerminationPolicy policy : policies) {
+                Iteration.Stop stop = policy.update(score);
+                if(result == Iteration.Stop.NONE) {
+                    result = stop;
+                }
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Stops once the best score hasn't improved for a number of iterations.
+     */
+    final class NoImprovement implements TerminationPolicy {
+        private final int iterations;
+        private double best = -Double.MAX_VALUE;
+        private int count;
+
+        /**
+         * @param iterations Number of iterations without a better score after which to stop.
+         */
+        public NoImprovement(int iterations) {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public Iteration.Stop update(double score) {
+            if(score > best) {
+                best = score;
+                count = 0;
+                return Iteration.Stop.NONE;
+            }
+            return ++count >= iterations ? Iteration.Stop.NO_IMPROVEMENT : Iteration.Stop.NONE;
+        }
+    }
+
+    /**
+     * Stops once the best score improved by less than a relative amount over a window of iterations.
+     */
+    final class Stagnation implements TerminationPolicy {
+        private final double[] history; // Best score of the last window + 1 iterations, used as a ring buffer
+        private final double minImprovement;
+        private double best = -Double.MAX_VALUE;
+        private int count;
+
+        /**
+         * @param window         Number of iterations to compare the best score over.
+         * @param minImprovement Smallest relative improvement of the best score over the window to go on.
+         */
+        public Stagnation(int window, double minImprovement) {
+            this.history = new double[window + 1];
+            this.minImprovement = minImprovement;
+        }
+
+        @Override
+        public Iteration.Stop update(double score) {
+            best = Math.max(best, score);
+            history[count % history.length] = best;
+            count++;
+            if(count < history.length) {
+                return Iteration.Stop.NONE;
+            }
+
+            double old = history[count % history.length];
+            double improvement = old > 0 ? (best - old) / old : best - old;
+            return improvement < minImprovement ? Iteration.Stop.STAGNATION : Iteration.Stop.NONE;
+        }
+    }
+
+    /**
+     * Stops once the score reaches a target.
+     */
+    final class TargetScore implements TerminationPolicy {
+        private final double target;
+
+        /**
+         * @param target Score which is good enough.
+         */
+        public TargetScore(double target) {
+            this.target = target;
+        }
+
+        @Override
+        public Iteration.Stop update(double score) {
+            return score >= target ? Iteration.Stop.TARGET_SCORE : Iteration.Stop.NONE;
+        }
+    }
+}
@@ -1,46 +1,43 @@
 package com.graphhopper.routing.ils.ls;
 
-import com.graphhopper.util.PointList;
-
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Class which contains metadata about a particular edge in the graph. Used by
  * the ILS algorithms.
  * <p>
- * In the ILS-CAS algorithm this represents an "attractive arc".
+ * In the ILS-CAS algorithm this represents an "attractive arc". Arcs are immutable and created by an {@link ArcState}
+ * which also holds the geometry and the per query metrics of each arc under its ID.
  */
 public class Arc {
     public static final int FAKE_ARC_ID = -1;
 
+    public final int id; // Index of the arc in its ArcState
     public final int edgeId, baseNode, adjNode;
     public final double cost, score;
-    public final PointList points; // Points along the arc
-
-    public double improvePotential, qualityRatio; // Metrics used by ILS algorithm
-    private List<Arc> cas; // Candidate Arc Set of this arc
 
     /**
      * Constructor for creating a new Arc object.
      *
+     * @param id       Index of the arc in the {@link ArcState} which created it.
      * @param edgeId   The ID of the current edge in the graph.
      * @param baseNode The node ID of the first node which this arc connects.
      * @param adjNode  The node ID of the second nod which this arc connects.
      * @param cost     The distance of the road, in meters.
      * @param score    The score of the arc.
-     * @param points   Points on the map of the arc.
      */
-    public Arc(int edgeId, int baseNode, int adjNode, double cost, double score, PointList points) {
+    Arc(int id, int edgeId, int baseNode, int adjNode, double cost, double score) {
+        this.id = id;
         this.edgeId = edgeId;
         this.baseNode = baseNode;
         this.adjNode = adjNode;
         this.cost = cost;
         this.score = score;
-        this.points = points;
-        improvePotential = -1;
-        qualityRatio = -1;
-        cas = new ArrayList<>();
+    }
+
+    /**
+     * Returns whether this is the placeholder arc of an initial solution.
+     */
+    public boolean isFake() {
+        return edgeId == FAKE_ARC_ID;
     }
 
     @Override
@@ -50,24 +47,6 @@ public class Arc {
                 '}';
     }
 
-    /**
-     * Gets the Candidate Arc Set of the current Arc.
-     *
-     * @return CAS
-     */
-    public List<Arc> getCas() {
-        return cas;
-    }
-
-    /**
-     * Updates the Candidate Arc Set of the current Arc.
-     *
-     * @param cas Candidate Arc Set to update.
-     */
-    public void setCas(List<Arc> cas) {
-        this.cas = cas;
-    }
-
     @Override
     public boolean equals(Object o) {
         if(this == o) return true;
@@ -0,0 +1,197 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.Shape;
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable catalog of every edge of a graph which can be travelled by bike, held in primitive parallel arrays. It is
+ * built once per graph and shared by all requests, so CAS computations neither create geometry objects nor fetch way
+ * geometry from the graph storage.
+ * <p>
+ * Every edge is cataloged once in a direction it can be travelled. Edges which can be travelled both ways are
+ * flagged, so a query can orient them itself. Scores are plain {@link BikePriorityWeighting} scores and don't depend on
+ * the direction. The geometry only holds the pillar nodes of an edge, its bounding box also covers both tower nodes.
+ */
+public final class ArcCatalog {
+
+    private final int[] edges, baseNodes, adjNodes;
+    private final boolean[] twoWay;
+    private final double[] costs, scores;
+    private final int[] pointStart; // Offsets into lats and lons, one more than the number of arcs
+    private final double[] lats, lons;
+    private final float[] bounds; // minLat, maxLat, minLon, maxLon
+    private final int[] byEdge; // Catalog index by edge ID or -1
+
+    private ArcCatalog(int[] edges, int[] baseNodes, int[] adjNodes, boolean[] twoWay, double[] costs, double[] scores,
+                       int[] pointStart, double[] lats, double[] lons, float[] bounds, int[] byEdge) {
+        this.edges = edges;
+        this.baseNodes = baseNodes;
+        this.adjNodes = adjNodes;
+        this.twoWay = twoWay;
+        this.costs = costs;
+        this.scores = scores;
+        this.pointStart = pointStart;
+        this.lats = lats;
+        this.lons = lons;
+        this.bounds = bounds;
+        this.byEdge = byEdge;
+    }
+
+    /**
+     * Builds the catalog for all edges of the specified graph.
+     *
+     * @param graph   Base graph without shortcuts.
+     * @param encoder Flag encoder used to check edge directions and scores.
+     * @return New catalog.
+     */
+    public static ArcCatalog build(@NotNull Graph graph, @NotNull FlagEncoder encoder) {
+        BikePriorityWeighting scoreWeighting = new BikePriorityWeighting(encoder);
+        AllEdgesIterator iter = graph.getAllEdges();
+        int maxEdges = iter.getMaxId();
+
+        int[] byEdge = new int[maxEdges];
+        Arrays.fill(byEdge, -1);
+        int[] edges = new int[maxEdges];
+        int[] baseNodes = new int[maxEdges];
+        int[] adjNodes = new int[maxEdges];
+        boolean[] twoWay = new boolean[maxEdges];
+        double[] costs = new double[maxEdges];
+        double[] scores = new double[maxEdges];
+        float[] bounds = new float[maxEdges * 4];
+        int[] pointStart = new int[maxEdges + 1];
+        DoubleArrayList lats = new DoubleArrayList();
+        DoubleArrayList lons = new DoubleArrayList();
+
+        int size = 0;
+        while(iter.next()) {
+            long flags = iter.getFlags();
+            boolean forward = encoder.isForward(flags);
+            boolean backward = encoder.isBackward(flags);
+            if(!forward && !backward) {
+                continue;
+            }
+
+            int edge = iter.getEdge();
+            byEdge[edge] = size;
+            edges[size] = edge;
+            baseNodes[size] = forward ? iter.getBaseNode() : iter.getAdjNode();
+            adjNodes[size] = forward ? iter.getAdjNode() : iter.getBaseNode();
+            twoWay[size] = forward && backward;
+            costs[size] = iter.getDistance();
+            scores[size] = scoreWeighting.calcWeight(iter, false, iter.getBaseNode());
+
+            PointList points = iter.fetchWayGeometry(3);
+            float minLat = Float.MAX_VALUE, minLon = Float.MAX_VALUE;
+            float maxLat = -Float.MAX_VALUE, maxLon = -Float.MAX_VALUE;
+            for(int i = 0; i < points.size(); i++) {
+                double lat = points.getLatitude(i);
+                double lon = points.getLongitude(i);
+                minLat = Math.min(minLat, (float) lat);
+                maxLat = Math.max(maxLat, (float) lat);
+                minLon = Math.min(minLon, (float) lon);
+                maxLon = Math.max(maxLon, (float) lon);
+
+                // The first and last point are the tower nodes
+                if(i > 0 && i < points.size() - 1) {
+                    lats.add(lat);
+                    lons.add(lon);
+                }
+            }
+            bounds[size * 4] = minLat;
+            bounds[size * 4 + 1] = maxLat;
+            bounds[size * 4 + 2] = minLon;
+            bounds[size * 4 + 3] = maxLon;
+
+            size++;
+            pointStart[size] = lats.size();
+        }
+
+        return new ArcCatalog(Arrays.copyOf(edges, size), Arrays.copyOf(baseNodes, size),
+                Arrays.copyOf(adjNodes, size), Arrays.copyOf(twoWay, size), Arrays.copyOf(costs, size),
+                Arrays.copyOf(scores, size), Arrays.copyOf(pointStart, size + 1), lats.toArray(), lons.toArray(),
+                Arrays.copyOf(bounds, size * 4), byEdge);
+    }
+
+    /**
+     * Returns the number of arcs in the catalog.
+     */
+    public int size() {
+        return edges.length;
+    }
+
+    /**
+     * Returns the catalog index of the specified edge.
+     *
+     * @param edge Edge ID.
+     * @return Index or -1 if the edge isn't part of the catalog, like the virtual edges of a query graph.
+     */
+    public int indexOf(int edge) {
+        return edge >= 0 && edge < byEdge.length ? byEdge[edge] : -1;
+    }
+
+    public int getEdge(int index) {
+        return edges[index];
+    }
+
+    public int getBaseNode(int index) {
+        return baseNodes[index];
+    }
+
+    public int getAdjNode(int index) {
+        return adjNodes[index];
+    }
+
+    /**
+     * Returns whether the arc can also be travelled from its adjacent to its base node.
+     */
+    public boolean isTwoWay(int index) {
+        return twoWay[index];
+    }
+
+    public double getCost(int index) {
+        return costs[index];
+    }
+
+    /**
+     * Returns the {@link BikePriorityWeighting} score of the arc.
+     */
+    public double getScore(int index) {
+        return scores[index];
+    }
+
+    float getMinLat(int index) {
+        return bounds[index * 4];
+    }
+
+    float getMaxLat(int index) {
+        return bounds[index * 4 + 1];
+    }
+
+    float getMinLon(int index) {
+        return bounds[index * 4 + 2];
+    }
+
+    float getMaxLon(int index) {
+        return bounds[index * 4 + 3];
+    }
+
+    /**
+     * Returns whether all pillar nodes of the arc lie inside the specified shape.
+     */
+    public boolean isInside(int index, @NotNull Shape shape) {
+        for(int i = pointStart[index]; i < pointStart[index + 1]; i++) {
+            if(!shape.contains(lats[i], lons[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.util.shapes.BBox;
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the bounding boxes of all arcs of an {@link ArcCatalog}. Used to fetch the arcs near a pruning
+ * {@link Ellipse} without traversing the graph. Each arc is stored in every cell its bounding box overlaps. Queries
+ * drop arcs which are too short or unattractive using the catalog, before any {@link Arc} is created.
+ */
+public final class ArcIndex {
+
+    /**
+     * Default side length of a grid cell in degrees, roughly one kilometer.
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.01;
+
+    private final ArcCatalog catalog;
+    private final double cellSize;
+    private final double minLat, minLon;
+    private final int rows, cols;
+    private int[] cellStart; // Offsets into cellArcs, one more than the number of cells
+    private int[] cellArcs;
+
+    private ArcIndex(ArcCatalog catalog, double cellSize, double minLat, double minLon, int rows, int cols) {
+        this.catalog = catalog;
+        this.cellSize = cellSize;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static ArcIndex build(@NotNull ArcCatalog catalog) {
+        return build(catalog, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Builds the index for all arcs of the specified catalog.
+     *
+     * @param catalog  Arc catalog of the graph.
+     * @param cellSize Side length of a grid cell in degrees.
+     * @return New index.
+     */
+    public static ArcIndex build(@NotNull ArcCatalog catalog, double cellSize) {
+        double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for(int arc = 0; arc < catalog.size(); arc++) {
+            minLat = Math.min(minLat, catalog.getMinLat(arc));
+            maxLat = Math.max(maxLat, catalog.getMaxLat(arc));
+            minLon = Math.min(minLon, catalog.getMinLon(arc));
+            maxLon = Math.max(maxLon, catalog.getMaxLon(arc));
+        }
+
+        if(catalog.size() == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+
+        int rows = (int) ((maxLat - minLat) / cellSize) + 1;
+        int cols = (int) ((maxLon - minLon) / cellSize) + 1;
+        ArcIndex index = new ArcIndex(catalog, cellSize, minLat, minLon, rows, cols);
+        index.fill();
+        return index;
+    }
+
+    /**
+     * Counts the arcs per cell first, so all cells can share one array.
+     */
+    private void fill() {
+        int cells = rows * cols;
+        cellStart = new int[cells + 1];
+        for(int arc = 0; arc < catalog.size(); arc++) {
+            for(int row = minRow(arc); row <= row(catalog.getMaxLat(arc)); row++) {
+                for(int col = minCol(arc); col <= col(catalog.getMaxLon(arc)); col++) {
+                    cellStart[row * cols + col + 1]++;
+                }
+            }
+        }
+        for(int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+
+        cellArcs = new int[cellStart[cells]];
+        int[] next = Arrays.copyOf(cellStart, cells);
+        for(int arc = 0; arc < catalog.size(); arc++) {
+            for(int row = minRow(arc); row <= row(catalog.getMaxLat(arc)); row++) {
+                for(int col = minCol(arc); col <= col(catalog.getMaxLon(arc)); col++) {
+                    cellArcs[next[row * cols + col]++] = arc;
+                }
+            }
+        }
+    }
+
+    private int minRow(int arc) {
+        return row(catalog.getMinLat(arc));
+    }
+
+    private int minCol(int arc) {
+        return col(catalog.getMinLon(arc));
+    }
+
+    private int row(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) ((lat - minLat) / cellSize)));
+    }
+
+    private int col(double lon) {
+        return Math.max(0, Math.min(cols - 1, (int) ((lon - minLon) / cellSize)));
+    }
+
+    /**
+     * Collects all arcs whose bounding box intersects the specified one and which pass the minimum score and length.
+     * Every arc is reported at most once.
+     *
+     * @param query     Bounding box to search.
+     * @param minScore  Minimum {@link BikePriorityWeighting} score of an arc.
+     * @param minLength Minimum length of an arc in meters.
+     * @param result    List the catalog indices are added to.
+     */
+    public void query(@NotNull BBox query, double minScore, double minLength, @NotNull IntArrayList result) {
+        int rowFrom = row(query.minLat), rowTo = row(query.maxLat);
+        int colFrom = col(query.minLon), colTo = col(query.maxLon);
+        for(int row = rowFrom; row <= rowTo; row++) {
+            for(int col = colFrom; col <= colTo; col++) {
+                int cell = row * cols + col;
+                for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int arc = cellArcs[i];
+                    if(catalog.getMinLat(arc) > query.maxLat || catalog.getMaxLat(arc) < query.minLat ||
+                            catalog.getMinLon(arc) > query.maxLon || catalog.getMaxLon(arc) < query.minLon) {
+                        continue;
+                    }
+
+                    // Arcs spanning several cells are only reported by the first cell shared with the query
+                    if(row != Math.max(rowFrom, minRow(arc)) || col != Math.max(colFrom, minCol(arc))) {
+                        continue;
+                    }
+
+                    if(catalog.getScore(arc) >= minScore && catalog.getCost(arc) >= minLength) {
+                        result.add(arc);
+                    }
+                }
+            }
+        }
+    }
+
+    public ArcCatalog getCatalog() {
+        return catalog;
+    }
+}
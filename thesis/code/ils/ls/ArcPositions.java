@@ -0,0 +1,77 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.sun.istack.internal.NotNull;
+
+import java.util.List;
+
+/**
+ * Positions of the attractive arcs of a route by arc ID. The local search looks up the neighbours of every arc of its
+ * solution after each insertion, which made scanning the arc list quadratic in the route length.
+ * <p>
+ * The index is rebuilt lazily on the first lookup after the route changed, so building a route arc by arc costs
+ * nothing and lookups between two changes take constant time. If an arc is in the route more than once its first
+ * position is returned, like {@link List#indexOf(Object)} does, and {@link #count(Arc)} tells how often it is there.
+ */
+public final class ArcPositions {
+
+    private final List<Arc> arcs;
+    private final IntIntHashMap positions = new IntIntHashMap();
+    private final IntIntHashMap counts = new IntIntHashMap();
+    private boolean valid = true;
+
+    /**
+     * @param arcs Live list of the arcs of the route.
+     */
+    public ArcPositions(@NotNull List<Arc> arcs) {
+        this.arcs = arcs;
+    }
+
+    /**
+     * Marks the index as outdated. Must be called whenever the list of arcs changes.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Returns the position of the specified arc.
+     *
+     * @param arc Arc
+     * @return Index in the arc list or -1 if the arc is not in the route.
+     */
+    public int indexOf(@NotNull Arc arc) {
+        update();
+        return positions.getOrDefault(arc.id, -1);
+    }
+
+    /**
+     * Returns how often the specified arc is in the route.
+     *
+     * @param arc Arc
+     * @return Number of positions of the arc, 0 if it is not in the route.
+     */
+    public int count(@NotNull Arc arc) {
+        update();
+        return counts.getOrDefault(arc.id, 0);
+    }
+
+    public boolean contains(@NotNull Arc arc) {
+        return indexOf(arc) >= 0;
+    }
+
+    private void update() {
+        if(valid) {
+            return;
+        }
+        positions.clear();
+        counts.clear();
+        // Going backwards leaves the first position of repeated arcs in the map
+        for(int i = arcs.size() - 1; i >= 0; i--) {
+            int id = arcs.get(i).id;
+            positions.put(id, i);
+            counts.addTo(id, 1);
+        }
+        valid = true;
+    }
+}
@@ -0,0 +1,358 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.BreadthFirstSearch;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.Shape;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Per query state of the arcs used by the ILS algorithms. Every arc gets a dense ID on first use, so Candidate Arc
+ * Sets are lists of IDs and the Improve Potential and CAS of an arc are kept in arrays indexed by it. A Quality Ratio
+ * depends on the start and end of the CAS it was computed for, so each CAS keeps its own list of them.
+ * <p>
+ * Geometry is read from the shared {@link ArcCatalog} when possible. Only edges missing from the catalog, like the
+ * virtual edges of a query graph, have their geometry fetched and kept here.
+ * <p>
+ * The candidates of a new CAS are fetched from the {@link ArcIndex} if there is one, otherwise the graph is traversed.
+ */
+public final class ArcState {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Graph graph;
+    private final NodeAccess nodeAccess;
+    private final EdgeExplorer outExplorer;
+    private final Weighting scoreWeighting;
+    private final ArcIndex arcIndex; // Null if arcs are fetched by traversing the graph
+    private final ArcCatalog catalog;
+    private final List<Arc> arcs = new ArrayList<>();
+    private final LongIntHashMap byEdge = new LongIntHashMap(); // Arc ID by edge and base node
+    private final List<PointList> points = new ArrayList<>(); // Null if the geometry is in the catalog
+
+    private double[] improvePotentials = new double[INITIAL_CAPACITY];
+    // Context the Improve Potential was computed in, the CAS is null if it has to be computed again
+    private int[] ipStarts = new int[INITIAL_CAPACITY];
+    private int[] ipEnds = new int[INITIAL_CAPACITY];
+    private IntArrayList[] ipCas = new IntArrayList[INITIAL_CAPACITY];
+    private IntArrayList[] cas = new IntArrayList[INITIAL_CAPACITY];
+    private DoubleArrayList[] casRatios = new DoubleArrayList[INITIAL_CAPACITY]; // Quality Ratios parallel to cas
+
+    /**
+     * @param graph          Base graph without shortcuts.
+     * @param scoreWeighting Weighting used to score arcs.
+     * @param arcIndex       Arc index of the graph. May be null.
+     */
+    public ArcState(@NotNull Graph graph, @NotNull Weighting scoreWeighting, @Nullable ArcIndex arcIndex) {
+        this.graph = graph;
+        this.nodeAccess = graph.getNodeAccess();
+        this.outExplorer = graph.createEdgeExplorer(
+                new DefaultEdgeFilter(scoreWeighting.getFlagEncoder(), false, true));
+        this.scoreWeighting = scoreWeighting;
+        this.arcIndex = arcIndex;
+        this.catalog = arcIndex != null ? arcIndex.getCatalog() : null;
+    }
+
+    private static long key(int edge, int baseNode) {
+        return ((long) edge << 32) | (baseNode & 0xFFFFFFFFL);
+    }
+
+    private Arc add(int edge, int baseNode, int adjNode, double cost, double score, @Nullable PointList geometry) {
+        int id = arcs.size();
+        if(id == improvePotentials.length) {
+            int capacity = id * 2;
+            improvePotentials = Arrays.copyOf(improvePotentials, capacity);
+            ipStarts = Arrays.copyOf(ipStarts, capacity);
+            ipEnds = Arrays.copyOf(ipEnds, capacity);
+            ipCas = Arrays.copyOf(ipCas, capacity);
+            cas = Arrays.copyOf(cas, capacity);
+            casRatios = Arrays.copyOf(casRatios, capacity);
+        }
+
+        Arc arc = new Arc(id, edge, baseNode, adjNode, cost, score);
+        arcs.add(arc);
+        points.add(geometry);
+        improvePotentials[id] = -1;
+        cas[id] = new IntArrayList();
+        casRatios[id] = new DoubleArrayList();
+        return arc;
+    }
+
+    /**
+     * Returns the arc of the specified catalog entry.
+     *
+     * @param index    Catalog index.
+     * @param reversed Whether the arc is travelled against the cataloged direction, which requires a two-way edge.
+     * @param score    Score of the arc under the score weighting of the query.
+     * @return Arc
+     */
+    public Arc fromCatalog(int index, boolean reversed, double score) {
+        int edge = catalog.getEdge(index);
+        int baseNode = reversed ? catalog.getAdjNode(index) : catalog.getBaseNode(index);
+        int adjNode = reversed ? catalog.getBaseNode(index) : catalog.getAdjNode(index);
+        long key = key(edge, baseNode);
+        if(byEdge.containsKey(key)) {
+            return arcs.get(byEdge.get(key));
+        }
+
+        Arc arc = add(edge, baseNode, adjNode, catalog.getCost(index), score, null);
+        byEdge.put(key, arc.id);
+        return arc;
+    }
+
+    /**
+     * Returns the arc of the specified edge in the direction of the iterator state. The geometry is only fetched if
+     * the edge is not part of the catalog.
+     *
+     * @param edge  Edge
+     * @param score Score of the arc under the score weighting of the query.
+     * @return Arc
+     */
+    public Arc fromEdge(@NotNull EdgeIteratorState edge, double score) {
+        long key = key(edge.getEdge(), edge.getBaseNode());
+        if(byEdge.containsKey(key)) {
+            return arcs.get(byEdge.get(key));
+        }
+
+        PointList geometry = catalog != null && catalog.indexOf(edge.getEdge()) >= 0 ?
+                null : edge.fetchWayGeometry(0);
+        Arc arc = add(edge.getEdge(), edge.getBaseNode(), edge.getAdjNode(), edge.getDistance(), score, geometry);
+        byEdge.put(key, arc.id);
+        return arc;
+    }
+
+    /**
+     * Creates the placeholder arc of an initial solution.
+     *
+     * @param s    Start Node ID.
+     * @param d    End Node ID.
+     * @param cost Budget of the solution.
+     * @return Arc
+     */
+    public Arc createFake(int s, int d, double cost) {
+        return add(Arc.FAKE_ARC_ID, s, d, cost, 0, PointList.EMPTY);
+    }
+
+    /**
+     * Fetches the candidates of a new Candidate Arc Set. With an {@link ArcIndex} these are all arcs whose bounding box
+     * intersects the bounds of the Ellipse, except for the ones which are too short or, for plain scores, too
+     * unattractive. Otherwise the graph is traversed from the start node and every arc ending inside the Ellipse is
+     * returned. Either way two-way edges are travelled away from the start node: the traversal reaches them from the
+     * end it finds first, and arcs from the index leave the end closer to the start node as the crow flies.
+     *
+     * @param shape     Ellipse.
+     * @param startNode Node inside the Ellipse to start the traversal from.
+     * @param minScore  Minimum score of an arc, only checked by the index.
+     * @param minLength Minimum length of an arc in meters, only checked by the index.
+     * @return Arc list.
+     */
+    public List<Arc> collectArcs(@NotNull Ellipse shape, int startNode, double minScore, double minLength) {
+        if(arcIndex != null) {
+            return collectIndexedArcs(shape, startNode, minScore, minLength);
+        }
+
+        final List<Arc> result = new ArrayList<>();
+        BreadthFirstSearch bfs = new BreadthFirstSearch() {
+            final IntHashSet edgeIds = new IntHashSet();
+
+            @Override
+            protected boolean goFurther(int nodeId) {
+                return shape.contains(nodeAccess.getLatitude(nodeId), nodeAccess.getLongitude(nodeId));
+            }
+
+            @Override
+            protected boolean checkAdjacent(EdgeIteratorState edge) {
+                int adjNode = edge.getAdjNode();
+                if(shape.contains(nodeAccess.getLatitude(adjNode), nodeAccess.getLongitude(adjNode))) {
+                    if(edgeIds.add(edge.getEdge())) {
+                        result.add(fromEdge(edge, scoreWeighting.calcWeight(edge, false, edge.getBaseNode())));
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+        bfs.start(outExplorer, startNode);
+        return result;
+    }
+
+    private List<Arc> collectIndexedArcs(Ellipse shape, int startNode, double minScore, double minLength) {
+        boolean plainScores = BikePriorityWeighting.isPlain(scoreWeighting);
+        IntArrayList indices = new IntArrayList();
+        arcIndex.query(shape.getBounds(), plainScores ? minScore : -Double.MAX_VALUE, minLength, indices);
+
+        double lat = nodeAccess.getLatitude(startNode);
+        double lon = nodeAccess.getLongitude(startNode);
+        List<Arc> result = new ArrayList<>(indices.size());
+        for(int i = 0; i < indices.size(); i++) {
+            int index = indices.get(i);
+            int baseNode = catalog.getBaseNode(index);
+            int adjNode = catalog.getAdjNode(index);
+            boolean reversed = catalog.isTwoWay(index) &&
+                    getNormalizedDistance(lat, lon, adjNode) < getNormalizedDistance(lat, lon, baseNode);
+            if(reversed) {
+                baseNode = adjNode;
+                adjNode = catalog.getBaseNode(index);
+            }
+
+            double score = plainScores ? catalog.getScore(index) : scoreWeighting.calcWeight(
+                    graph.getEdgeIteratorState(catalog.getEdge(index), adjNode), false, baseNode);
+            result.add(fromCatalog(index, reversed, score));
+        }
+        return result;
+    }
+
+    private double getNormalizedDistance(double lat, double lon, int node) {
+        return Helper.DIST_PLANE.calcNormalizedDist(lat, lon, nodeAccess.getLatitude(node),
+                nodeAccess.getLongitude(node));
+    }
+
+    public Arc get(int id) {
+        return arcs.get(id);
+    }
+
+    /**
+     * Resolves a list of arc IDs.
+     *
+     * @param ids Arc IDs.
+     * @return New list of arcs.
+     */
+    public List<Arc> getArcs(@NotNull IntArrayList ids) {
+        List<Arc> result = new ArrayList<>(ids.size());
+        for(int i = 0; i < ids.size(); i++) {
+            result.add(arcs.get(ids.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all pillar nodes of the arc lie inside the specified shape.
+     */
+    public boolean isInside(@NotNull Arc arc, @NotNull Shape shape) {
+        PointList geometry = points.get(arc.id);
+        if(geometry == null) {
+            return catalog.isInside(catalog.indexOf(arc.edgeId), shape);
+        }
+
+        for(int i = 0; i < geometry.size(); i++) {
+            if(!shape.contains(geometry.getLatitude(i), geometry.getLongitude(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double getImprovePotential(@NotNull Arc arc) {
+        return improvePotentials[arc.id];
+    }
+
+    /**
+     * Stores the Improve Potential of the specified Arc together with the context it was computed in.
+     *
+     * @param arc              Arc
+     * @param improvePotential Improve Potential.
+     * @param start            Node ID before the arc.
+     * @param end              Node ID after the arc.
+     */
+    public void setImprovePotential(@NotNull Arc arc, double improvePotential, int start, int end) {
+        improvePotentials[arc.id] = improvePotential;
+        ipStarts[arc.id] = start;
+        ipEnds[arc.id] = end;
+        ipCas[arc.id] = cas[arc.id];
+    }
+
+    /**
+     * Returns whether the stored Improve Potential of the specified Arc was computed between the specified nodes for
+     * its current CAS. A CAS which is set again with the same arcs keeps its list, so this compares identities.
+     *
+     * @param arc   Arc
+     * @param start Node ID before the arc.
+     * @param end   Node ID after the arc.
+     * @return True if the Improve Potential doesn't have to be computed again.
+     */
+    public boolean isImprovePotentialCurrent(@NotNull Arc arc, int start, int end) {
+        int id = arc.id;
+        return ipCas[id] != null && ipCas[id] == cas[id] && ipStarts[id] == start && ipEnds[id] == end;
+    }
+
+    /**
+     * Forces the Improve Potential of the specified Arc to be computed again, for changes not covered by its context.
+     */
+    public void invalidateImprovePotential(@NotNull Arc arc) {
+        ipCas[arc.id] = null;
+    }
+
+    /**
+     * Gets the Candidate Arc Set of the specified Arc as arc IDs.
+     *
+     * @param arc Arc
+     * @return CAS
+     */
+    public IntArrayList getCas(@NotNull Arc arc) {
+        return cas[arc.id];
+    }
+
+    /**
+     * Gets the Quality Ratios of the Candidate Arc Set of the specified Arc, in the order of its arc IDs.
+     *
+     * @param arc Arc
+     * @return Quality Ratios.
+     */
+    public DoubleArrayList getCasRatios(@NotNull Arc arc) {
+        return casRatios[arc.id];
+    }
+
+    /**
+     * Updates the Candidate Arc Set of the specified Arc. If the new CAS holds the same arcs in the same order the
+     * current list is kept, so the Improve Potential computed for it stays valid.
+     *
+     * @param arc    Arc
+     * @param ids    Candidate Arc Set to update as arc IDs.
+     * @param ratios Quality Ratios of the arcs in the same order.
+     */
+    public void setCas(@NotNull Arc arc, @NotNull IntArrayList ids, @NotNull DoubleArrayList ratios) {
+        casRatios[arc.id] = ratios;
+        if(!ids.equals(cas[arc.id])) {
+            cas[arc.id] = ids;
+        }
+    }
+
+    /**
+     * Updates the Candidate Arc Set of the specified Arc to the arcs of another CAS which are kept by the filter. The
+     * arcs keep their order and Quality Ratios.
+     *
+     * @param arc    Arc
+     * @param ids    CAS to restrict as arc IDs.
+     * @param ratios Quality Ratios of that CAS.
+     * @param keep   Filter of the arc IDs to keep.
+     */
+    public void restrictCas(@NotNull Arc arc, @NotNull IntArrayList ids, @NotNull DoubleArrayList ratios,
+                            @NotNull IntPredicate keep) {
+        IntArrayList newIds = new IntArrayList();
+        DoubleArrayList newRatios = new DoubleArrayList();
+        for(int i = 0; i < ids.size(); i++) {
+            if(keep.test(ids.get(i))) {
+                newIds.add(ids.get(i));
+                newRatios.add(ratios.get(i));
+            }
+        }
+        setCas(arc, newIds, newRatios);
+    }
+}
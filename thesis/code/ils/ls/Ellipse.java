@@ -2,61 +2,177 @@ package com.graphhopper.routing.ils.ls;
 
 import com.graphhopper.routing.ils.ls.normal.LSIteratedLocalSearch;
 import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.Shape;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 /**
  * Class which represents an Ellipse on the map. Used by the {@link LSIteratedLocalSearch} algorithm for restricting
- * the search space.
+ * the search space. A point is inside if the sum of its great-circle distances to both foci is at most the radius.
  * <p>
- * Note: This does not fully implement the Shape interface!
+ * Points are first checked in a local equirectangular projection around the center of the ellipse. The exact
+ * great-circle distances are only computed for points whose projected distance sum lies within the projection error
+ * of the radius.
  */
 public class Ellipse implements Shape {
 
     private static DistanceCalc calc = Helper.DIST_EARTH;
+    private static final double METERS_PER_DEGREE = DistanceCalcEarth.R * Math.PI / 180;
+    private static final int SEGMENT_STEPS = 50;
 
     private GHPoint focus1;
     private GHPoint focus2;
     private double radius;
+    private GHPoint center;
+    private BBox bounds;
+
+    // Local projection, in meters relative to the center
+    private double lonScale;
+    private double x1, y1, x2, y2; // Projected foci
+    private double margin; // Maximum projection error of a distance sum
 
     public Ellipse(GHPoint focus1, GHPoint focus2, double radius) {
         this.focus1 = focus1;
         this.focus2 = focus2;
         this.radius = radius;
+        center = new GHPoint((focus1.lat + focus2.lat) / 2, (focus1.lon + focus2.lon) / 2);
+
+        // No point of the ellipse is farther than half the radius away from the center
+        BBox approx = calc.createBBox(center.lat, center.lon, radius / 2);
+        double halfHeight = Math.toRadians(approx.maxLat - approx.minLat) / 2;
+        double maxLat = Math.min(89, Math.max(Math.abs(approx.minLat), Math.abs(approx.maxLat)));
+
+        // The scale of the longitude only matches at the center and drifts with the tangent of the latitude
+        margin = radius * (Math.tan(Math.toRadians(maxLat)) * halfHeight + 1e-3);
+        bounds = calc.createBBox(center.lat, center.lon, radius / 2 + margin);
+
+        lonScale = Math.cos(Math.toRadians(center.lat)) * METERS_PER_DEGREE;
+        x1 = x(focus1.lon);
+        y1 = y(focus1.lat);
+        x2 = x(focus2.lon);
+        y2 = y(focus2.lat);
+    }
+
+    private double x(double lon) {
+        return (lon - center.lon) * lonScale;
+    }
+
+    private double y(double lat) {
+        return (lat - center.lat) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Returns the sum of the projected distances of a projected point to both foci.
+     */
+    private double planarSum(double x, double y) {
+        double dx1 = x - x1, dy1 = y - y1;
+        double dx2 = x - x2, dy2 = y - y2;
+        return Math.sqrt(dx1 * dx1 + dy1 * dy1) + Math.sqrt(dx2 * dx2 + dy2 * dy2);
     }
 
+    /**
+     * Returns whether the ellipse has any points, that is if the radius is at least the distance between the foci.
+     */
+    private boolean isEmpty() {
+        return calc.calcDist(focus1.lat, focus1.lon, focus2.lat, focus2.lon) > radius;
+    }
+
+    /**
+     * Returns whether the ellipse intersects the specified shape. The test is exact up to the projection error for
+     * bounding boxes and only compares bounds for any other shape.
+     */
     @Override
     public boolean intersect(Shape o) {
-        throw new NotImplementedException();
+        if(!bounds.intersect(o.getBounds()) || isEmpty()) {
+            return false;
+        }
+        if(!(o instanceof BBox)) {
+            return true;
+        }
+
+        BBox box = (BBox) o;
+        if(box.contains(focus1.lat, focus1.lon) || box.contains(focus2.lat, focus2.lon)) {
+            return true;
+        }
+
+        // The distance sum is convex, so outside of the box its minimum lies on the border
+        double left = x(box.minLon), right = x(box.maxLon);
+        double bottom = y(box.minLat), top = y(box.maxLat);
+        double min = Math.min(
+                Math.min(minOnSegment(left, bottom, right, bottom), minOnSegment(left, top, right, top)),
+                Math.min(minOnSegment(left, bottom, left, top), minOnSegment(right, bottom, right, top)));
+        return min <= radius + margin;
+    }
+
+    /**
+     * Ternary search for the smallest projected distance sum along a segment.
+     */
+    private double minOnSegment(double ax, double ay, double bx, double by) {
+        double lo = 0, hi = 1;
+        for(int i = 0; i < SEGMENT_STEPS; i++) {
+            double m1 = lo + (hi - lo) / 3;
+            double m2 = hi - (hi - lo) / 3;
+            if(planarSum(ax + m1 * (bx - ax), ay + m1 * (by - ay)) <
+                    planarSum(ax + m2 * (bx - ax), ay + m2 * (by - ay))) {
+                hi = m2;
+            } else {
+                lo = m1;
+            }
+        }
+        double t = (lo + hi) / 2;
+        return planarSum(ax + t * (bx - ax), ay + t * (by - ay));
     }
 
     @Override
     public boolean contains(double lat, double lon) {
+        if(!bounds.contains(lat, lon)) {
+            return false;
+        }
+
+        double planar = planarSum(x(lon), y(lat));
+        if(planar < radius - margin) {
+            return true;
+        } else if(planar > radius + margin) {
+            return false;
+        }
+
         return calc.calcDist(lat, lon, focus1.lat, focus1.lon) +
                 calc.calcDist(lat, lon, focus2.lat, focus2.lon) <= radius;
     }
 
+    /**
+     * Returns whether the bounds of the specified shape lie completely inside the ellipse. Since the ellipse is convex
+     * it is enough to check the corners.
+     */
     @Override
     public boolean contains(Shape s) {
-        throw new NotImplementedException();
+        BBox box = s.getBounds();
+        return contains(box.minLat, box.minLon) && contains(box.minLat, box.maxLon) &&
+                contains(box.maxLat, box.minLon) && contains(box.maxLat, box.maxLon);
     }
 
     @Override
     public BBox getBounds() {
-        throw new NotImplementedException();
+        return bounds;
     }
 
     @Override
     public GHPoint getCenter() {
-        throw new NotImplementedException();
+        return center;
     }
 
-
+    /**
+     * Returns the area of the ellipse in square meters.
+     */
     @Override
     public double calculateArea() {
-        throw new NotImplementedException();
+        double a = radius / 2;
+        double c = calc.calcDist(focus1.lat, focus1.lon, focus2.lat, focus2.lon) / 2;
+        if(c > a) {
+            return 0;
+        }
+        return Math.PI * a * Math.sqrt(a * a - c * c);
     }
 }
@@ -0,0 +1,160 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.graphhopper.routing.ils.Deadline;
+import com.sun.istack.internal.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Evaluates a function for every arc of a list, like the path costs and Quality Ratios of a Candidate Arc Set. Large
+ * lists are split into contiguous chunks which run in parallel, each with its own search engine created on the thread
+ * which runs the chunk. Results are written to an array in the order of the arcs, so the caller merges them the same
+ * way no matter how the chunks were scheduled.
+ * <p>
+ * The function must not write any shared state, in particular not the {@link ArcState} of the query. The caller
+ * stores the results once {@link #evaluate(List, Object, ToDoubleBiFunction)} returns.
+ * <p>
+ * Once the deadline of the request has passed every chunk stops and the arcs it didn't get to are left as
+ * {@link Double#NaN}.
+ * <p>
+ * The calling thread blocks until all chunks are done, so the evaluator must not share its pool with its callers: if
+ * every worker of a shared pool were a waiting caller, no chunk could run. By default all evaluators use a bounded pool
+ * of their own. Chunks never wait for other tasks, so evaluators sharing that pool only queue behind each other.
+ *
+ * @param <E> Search engine used by the function.
+ */
+public final class ParallelArcEvaluator<E> {
+
+    private static final ExecutorService SHARED_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new WorkerFactory());
+
+    private final Supplier<E> engines;
+    private final Consumer<E> release;
+    private final ExecutorService pool;
+    private final int threads;
+    private final int minChunkSize;
+    private Deadline deadline = Deadline.none();
+
+    /**
+     * Creates an evaluator running on the pool shared by all evaluators.
+     *
+     * @param engines      Creates a search engine for a worker thread.
+     * @param release      Releases a search engine once its chunk is done.
+     * @param threads      Maximum number of chunks evaluated at once.
+     * @param minChunkSize Minimum number of arcs per chunk. Shorter lists are evaluated on the calling thread.
+     */
+    public ParallelArcEvaluator(@NotNull Supplier<E> engines, @NotNull Consumer<E> release, int threads,
+                                int minChunkSize) {
+        this(engines, release, SHARED_POOL, threads, minChunkSize);
+    }
+
+    /**
+     * @param engines      Creates a search engine for a worker thread.
+     * @param release      Releases a search engine once its chunk is done.
+     * @param pool         Executor the chunks are submitted to. No caller of the evaluator may run on it.
+     * @param threads      Maximum number of chunks evaluated at once.
+     * @param minChunkSize Minimum number of arcs per chunk. Shorter lists are evaluated on the calling thread.
+     */
+    public ParallelArcEvaluator(@NotNull Supplier<E> engines, @NotNull Consumer<E> release,
+                                @NotNull ExecutorService pool, int threads, int minChunkSize) {
+        this.engines = engines;
+        this.release = release;
+        this.pool = pool;
+        this.threads = Math.max(1, threads);
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
+
+    /**
+     * Sets the deadline which stops the following evaluations.
+     */
+    public void setDeadline(@NotNull Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Evaluates the function for all arcs. The calling thread takes the first chunk with its own engine.
+     *
+     * @param arcs     Arcs to evaluate. Must not change during the call.
+     * @param local    Search engine of the calling thread.
+     * @param function Function of an engine and an arc.
+     * @return Results in the order of the arcs, {@link Double#NaN} for arcs skipped because of the deadline.
+     */
+    public double[] evaluate(@NotNull List<Arc> arcs, @NotNull E local, @NotNull ToDoubleBiFunction<E, Arc> function) {
+        double[] result = new double[arcs.size()];
+        Arrays.fill(result, Double.NaN);
+        int chunks = Math.min(threads, arcs.size() / minChunkSize);
+        if(chunks <= 1) {
+            evaluate(arcs, 0, arcs.size(), local, function, result);
+            return result;
+        }
+
+        int chunkSize = (arcs.size() + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        for(int from = chunkSize; from < arcs.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, arcs.size());
+            futures.add(pool.submit(() -> {
+                E engine = engines.get();
+                try {
+                    evaluate(arcs, start, end, engine, function, result);
+                } finally {
+                    release.accept(engine);
+                }
+            }));
+        }
+
+        boolean done = false;
+        try {
+            evaluate(arcs, 0, chunkSize, local, function, result);
+            for(Future<?> future : futures) {
+                future.get();
+            }
+            done = true;
+        } catch(InterruptedException | ExecutionException e) {
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Parallel arc evaluation failed!", e);
+        } finally {
+            if(!done) {
+                for(Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void evaluate(List<Arc> arcs, int from, int to, E engine, ToDoubleBiFunction<E, Arc> function,
+                          double[] result) {
+        for(int i = from; i < to && !deadline.isExpired(); i++) {
+            result[i] = function.applyAsDouble(engine, arcs.get(i));
+        }
+    }
+
+    /**
+     * Creates the daemon threads of the shared pool, so an idle pool doesn't keep the JVM alive.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "ils-cas-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.graphhopper.routing.ils.search.LandmarkTable;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.Helper;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lower bound of the cost of the path s --> arc --> d which doesn't need any shortest path search. Each leg is bounded
+ * by the great-circle distance between its end points and, if a {@link LandmarkTable} is available, by the landmark
+ * bound, whichever is larger. Blacklisting edges only makes paths longer, so the bound holds for both local search
+ * variants.
+ */
+public final class PathCostBound {
+
+    private static DistanceCalc calc = Helper.DIST_EARTH;
+
+    private final NodeAccess nodeAccess;
+    private final LandmarkTable landmarks; // Null if the graph has no landmark table
+
+    /**
+     * @param nodeAccess Node access of the graph which is searched.
+     * @param landmarks  Landmark table of the base graph. May be null.
+     */
+    public PathCostBound(@NotNull NodeAccess nodeAccess, @Nullable LandmarkTable landmarks) {
+        this.nodeAccess = nodeAccess;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Returns a lower bound of the shortest path distance from u to v.
+     *
+     * @return Distance in meters or {@link Double#MAX_VALUE} if v can't be reached from u.
+     */
+    public double getDistance(int u, int v) {
+        double bound = calc.calcDist(nodeAccess.getLatitude(u), nodeAccess.getLongitude(u),
+                nodeAccess.getLatitude(v), nodeAccess.getLongitude(v));
+        if(landmarks != null) {
+            bound = Math.max(bound, landmarks.getLowerBound(u, v));
+        }
+        return bound;
+    }
+
+    /**
+     * Returns a lower bound of the total distance of the path s --> arc --> d.
+     *
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the arc can't be part of a path from s to d.
+     */
+    public double getPathCost(int s, int d, @NotNull Arc arc) {
+        double toArc = getDistance(s, arc.baseNode);
+        double fromArc = getDistance(arc.adjNode, d);
+        if(toArc == Double.MAX_VALUE || fromArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        return toArc + arc.cost + fromArc;
+    }
+
+    /**
+     * Drops every arc whose lower bound exceeds the budget and sorts the remaining ones by ascending lower bound.
+     *
+     * @param s      Start Node ID.
+     * @param d      End Node ID.
+     * @param arcs   Arcs to check. Not modified.
+     * @param budget Budget in meters.
+     * @return New list of arcs which may fit into the budget.
+     */
+    public List<Arc> filter(int s, int d, @NotNull List<Arc> arcs, double budget) {
+        final double[] bounds = new double[arcs.size()];
+        List<Integer> order = new ArrayList<>(arcs.size());
+        for(int i = 0; i < arcs.size(); i++) {
+            bounds[i] = getPathCost(s, d, arcs.get(i));
+            if(bounds[i] <= budget) {
+                order.add(i);
+            }
+        }
+        order.sort((a, b) -> Double.compare(bounds[a], bounds[b]));
+
+        List<Arc> result = new ArrayList<>(order.size());
+        for(int i : order) {
+            result.add(arcs.get(i));
+        }
+        return result;
+    }
+}
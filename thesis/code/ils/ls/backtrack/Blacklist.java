@@ -0,0 +1,59 @@
+package com.graphhopper.routing.ils.ls.backtrack;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.routing.ils.search.EdgeBitSet;
+import com.graphhopper.routing.ils.search.ShortcutEdgeIndex;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Edge IDs a shortest path query must not use. The edges of a {@link Route} are shared by reference and the few extra
+ * edges of a single query are layered on top, so creating a blacklist doesn't copy the route. The route must not
+ * change while the blacklist is in use.
+ */
+public final class Blacklist {
+
+    private final EdgeBitSet base; // May be null
+    private final IntHashSet extra = new IntHashSet();
+    private int[] sortedExtra; // Null if it has to be rebuilt
+
+    Blacklist(@Nullable EdgeBitSet base) {
+        this.base = base;
+    }
+
+    void add(int edge) {
+        if(extra.add(edge)) {
+            sortedExtra = null;
+        }
+    }
+
+    void addAll(@NotNull IntHashSet edges) {
+        if(extra.addAll(edges) > 0) {
+            sortedExtra = null;
+        }
+    }
+
+    boolean contains(int edge) {
+        return (base != null && base.get(edge)) || (!extra.isEmpty() && extra.contains(edge));
+    }
+
+    /**
+     * Returns whether the shortcut covers any blacklisted edge.
+     */
+    boolean isCoveredBy(@NotNull ShortcutEdgeIndex index, int shortcut) {
+        if(base != null && index.coversAny(shortcut, base)) {
+            return true;
+        }
+        if(extra.isEmpty()) {
+            return false;
+        }
+
+        if(sortedExtra == null) {
+            sortedExtra = extra.toArray();
+            Arrays.sort(sortedExtra);
+        }
+        return index.coversAny(shortcut, sortedExtra);
+    }
+}
@@ -1,6 +1,5 @@
 package com.graphhopper.routing.ils.ls.backtrack;
 
-import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.util.EdgeIteratorState;
 import com.sun.istack.internal.NotNull;
@@ -8,13 +7,16 @@ import com.sun.istack.internal.NotNull;
 /**
  * EdgeFilter which blacklists a set EdgeIds. If an edge is not in the blacklist it defaults to the passed
  * in EdgeFilter.
+ * <p>
+ * Only used on graphs without shortcuts. Removing edges from a Contraction Hierarchy breaks the shortcuts of detours
+ * around them, so searches on a hierarchy check their path against the {@link Blacklist} afterwards instead.
  */
 public class BlacklistEdgeFilter implements EdgeFilter {
 
     private EdgeFilter edgeFilter;
-    private IntHashSet blacklist;
+    private Blacklist blacklist;
 
-    BlacklistEdgeFilter(@NotNull EdgeFilter edgeFilter, @NotNull IntHashSet blacklist) {
+    BlacklistEdgeFilter(@NotNull EdgeFilter edgeFilter, @NotNull Blacklist blacklist) {
         this.edgeFilter = edgeFilter;
         this.blacklist = blacklist;
     }
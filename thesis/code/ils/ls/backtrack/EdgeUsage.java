@@ -0,0 +1,63 @@
+package com.graphhopper.routing.ils.ls.backtrack;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.graphhopper.routing.ils.search.EdgeBitSet;
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Reference counted set of the edges used by a {@link Route}. Attractive arcs and blank path segments can share
+ * edges, so an edge only leaves the set once the last part using it has been removed. The set itself is kept as an
+ * {@link EdgeBitSet} which is updated together with the counts.
+ */
+final class EdgeUsage {
+
+    private final IntIntHashMap counts = new IntIntHashMap();
+    private final EdgeBitSet edges = new EdgeBitSet();
+
+    void add(int edge) {
+        if(counts.addTo(edge, 1) == 1) {
+            edges.set(edge);
+        }
+    }
+
+    void remove(int edge) {
+        int count = counts.addTo(edge, -1);
+        if(count < 0) {
+            throw new IllegalStateException("Edge " + edge + " is not used!");
+        }
+        if(count == 0) {
+            counts.remove(edge);
+            edges.clear(edge);
+        }
+    }
+
+    void addAll(@NotNull IntHashSet edges) {
+        for(IntCursor cursor : edges) {
+            add(cursor.value);
+        }
+    }
+
+    void removeAll(@NotNull IntHashSet edges) {
+        for(IntCursor cursor : edges) {
+            remove(cursor.value);
+        }
+    }
+
+    void addAll(@NotNull EdgeUsage other) {
+        for(IntIntCursor cursor : other.counts) {
+            if(counts.addTo(cursor.key, cursor.value) == cursor.value) {
+                edges.set(cursor.key);
+            }
+        }
+    }
+
+    /**
+     * Returns the live set of used edges. It changes whenever the route does.
+     */
+    EdgeBitSet getEdges() {
+        return edges;
+    }
+}
@@ -4,14 +4,25 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.PathBidirRef;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
 
 public class IlsPathCh extends PathBidirRef {
 
     private IntHashSet edges;
+    private Weighting scoreWeighting;
+    private double score;
 
-    IlsPathCh(Graph g, Weighting weighting) {
+    IlsPathCh(Graph g, Weighting weighting, Weighting scoreWeighting) {
         super(g, weighting);
         this.edges = new IntHashSet();
+        this.scoreWeighting = scoreWeighting;
+    }
+
+    @Override
+    public void processEdge(int edgeId, int adjNode, int prevEdgeId) {
+        super.processEdge(edgeId, adjNode, prevEdgeId);
+        EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, adjNode);
+        score += scoreWeighting.calcWeight(edge, false, prevEdgeId);
     }
 
     @Override
@@ -23,4 +34,11 @@ public class IlsPathCh extends PathBidirRef {
     public IntHashSet getEdges() {
         return edges;
     }
+
+    /**
+     * Returns the total score of the edges of the path.
+     */
+    public double getScore() {
+        return score;
+    }
 }
@@ -1,15 +1,26 @@
 package com.graphhopper.routing.ils.ls.backtrack;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
-import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.routing.ils.Deadline;
 import com.graphhopper.routing.ils.IlsAlgorithm;
+import com.graphhopper.routing.ils.IlsParameters;
+import com.graphhopper.routing.ils.IlsStorage;
 import com.graphhopper.routing.ils.Iteration;
+import com.graphhopper.routing.ils.TerminationPolicy;
 import com.graphhopper.routing.ils.ls.Arc;
+import com.graphhopper.routing.ils.ls.ArcState;
 import com.graphhopper.routing.ils.ls.Ellipse;
+import com.graphhopper.routing.ils.ls.ParallelArcEvaluator;
+import com.graphhopper.routing.ils.ls.PathCostBound;
 import com.graphhopper.routing.ils.ls.normal.ScaledBikePriorityWeighting;
+import com.graphhopper.routing.ils.search.BidirectionalSearch;
+import com.graphhopper.routing.ils.search.ShortcutEdgeIndex;
+import com.graphhopper.routing.ils.search.ShortcutScoreIndex;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
@@ -17,16 +28,16 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
-import com.graphhopper.util.shapes.GHPoint3D;
-import com.graphhopper.util.shapes.Shape;
 import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.graphhopper.util.Parameters.Routing.*;
 
@@ -43,32 +54,70 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
     private final int MIN_ROAD_LENGTH;
     private final double MAX_COST;
     private final int MAX_ITERATIONS;
+    private final long TIME_LIMIT;
     private final long SEED;
 
     private EdgeFilter edgeFilter;
+    private Searches searches; // Reused for every blacklisted Dijkstra query of the request thread
+    private ShortcutEdgeIndex shortcuts; // Null if not searching a Contraction Hierarchy
+    private ShortcutScoreIndex shortcutScores; // Null if shortcuts are scored by unpacking them
+    // Searches run on several threads, so they are counted with adders
+    private final LongAdder chQueries = new LongAdder();
+    private final LongAdder fallbackQueries = new LongAdder();
+    private PathCostBound bound; // Rejects arcs before any exact search
+    private ParallelArcEvaluator<Searches> evaluator; // Spreads CAS searches over threads
+    private ArcState arcs; // IDs, geometry and metrics of the arcs seen by this request
     private Weighting scoreWeighting; // Used for scoring arcs
     private int s, d; // Start and End Node IDs
     private Random random;
     private final Iteration[] iterations;
+    private int iterationCount; // Number of iterations which ran
 
+    private Deadline deadline = Deadline.none(); // Stops the search once the time limit has passed
+    private TerminationPolicy termination; // Stops the search once it has converged
     private boolean isFinished = false;
 
     /**
-     * Creates a new ILS algorithm instance.
+     * Creates a new ILS algorithm instance which runs plain Dijkstra searches.
      *
      * @param graph     Graph to run algorithm on.
-     * @param weighting Weighting to calculate costs.
+     * @param weighting Shortest distance weighting used to calculate costs.
      * @param params    Parameters map.
      */
     public NOBIteratedLocalSearch(Graph graph, Weighting weighting,
                                   PMap params) {
+        this(graph, weighting, null, new IlsStorage(), params);
+    }
+
+    /**
+     * Creates a new ILS algorithm instance. If the storage contains a {@link ShortcutEdgeIndex} shortest paths are
+     * computed on the Contraction Hierarchy without the blacklist, and only repeated on the plain graph with it if the
+     * path uses a blacklisted edge. Shortcuts are checked against the blacklist without unpacking them. If the storage
+     * contains a {@link com.graphhopper.routing.ils.search.LandmarkTable} infeasible arcs are rejected without a
+     * search.
+     *
+     * @param graph           Graph to run algorithm on.
+     * @param weighting       Shortest distance weighting used to calculate costs.
+     * @param levelEdgeFilter Edge filter for CH shortest path computation. May be null.
+     * @param storage         Precomputed graph data.
+     * @param params          Parameters map.
+     */
+    public NOBIteratedLocalSearch(Graph graph, Weighting weighting, @Nullable EdgeFilter levelEdgeFilter,
+                                  @NotNull IlsStorage storage, PMap params) {
         super(graph.getBaseGraph(), weighting, TraversalMode.EDGE_BASED_1DIR);
 
         scoreWeighting = new BikePriorityWeighting(flagEncoder);
         edgeFilter = new DefaultEdgeFilter(flagEncoder);
+        bound = new PathCostBound(nodeAccess, storage.getLandmarkTable());
+
+        if(levelEdgeFilter != null && storage.getShortcutEdgeIndex() != null) {
+            shortcuts = storage.getShortcutEdgeIndex();
+        }
 
         MAX_COST = params.getDouble(MAX_DIST, DEFAULT_MAX_DIST);
         MAX_ITERATIONS = params.getInt(Parameters.Routing.MAX_ITERATIONS, DEFAULT_MAX_ITERATIONS);
+        TIME_LIMIT = params.getLong(IlsParameters.TIME_LIMIT, IlsParameters.DEFAULT_TIME_LIMIT);
+        termination = TerminationPolicy.create(params);
         MIN_ROAD_SCORE = params.getDouble(Parameters.Routing.MIN_ROAD_SCORE, DEFAULT_MIN_ROAD_SCORE);
         MIN_ROAD_LENGTH = params.getInt(Parameters.Routing.MIN_ROAD_LENGTH, DEFAULT_MIN_ROAD_LENGTH);
         SEED = params.getLong(Parameters.Routing.SEED, System.currentTimeMillis());
@@ -79,6 +128,15 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
         if(params.getBool(USE_SCALED_SCORES, false)) {
             scoreWeighting = new ScaledBikePriorityWeighting(flagEncoder);
         }
+
+        arcs = new ArcState(this.graph, scoreWeighting, storage.getArcIndex());
+        if(shortcuts != null && BikePriorityWeighting.isPlain(scoreWeighting)) {
+            shortcutScores = storage.getShortcutScoreIndex();
+        }
+        searches = newSearches(graph, levelEdgeFilter);
+        evaluator = new ParallelArcEvaluator<>(() -> newSearches(graph, levelEdgeFilter), Searches::release,
+                params.getInt(IlsParameters.CAS_THREADS, Runtime.getRuntime().availableProcessors()),
+                params.getInt(IlsParameters.CAS_MIN_CHUNK_SIZE, IlsParameters.DEFAULT_CAS_MIN_CHUNK_SIZE));
     }
 
     /**
@@ -93,7 +151,31 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
         checkAlreadyRun();
         s = from;
         d = to;
-        return runILS();
+        deadline = Deadline.after(TIME_LIMIT);
+        evaluator.setDeadline(deadline);
+        try {
+            return runILS();
+        } finally {
+            searches.release();
+        }
+    }
+
+    /**
+     * Creates the searches of a thread. If shortcuts are available the main search runs on the Contraction Hierarchy
+     * and a plain Dijkstra is kept as fallback.
+     *
+     * @param graph           Graph passed to the constructor, may contain shortcuts.
+     * @param levelEdgeFilter Edge filter for CH shortest path computation. May be null.
+     */
+    private Searches newSearches(Graph graph, @Nullable EdgeFilter levelEdgeFilter) {
+        if(shortcuts != null) {
+            BidirectionalSearch search = new BidirectionalSearch(graph, weighting, flagEncoder, levelEdgeFilter,
+                    scoreWeighting, shortcutScores);
+            return new Searches(search,
+                    new BidirectionalSearch(this.graph, weighting, flagEncoder, null, scoreWeighting, null));
+        }
+        return new Searches(new BidirectionalSearch(this.graph, weighting, flagEncoder, null, scoreWeighting, null),
+                null);
     }
 
     /**
@@ -102,32 +184,44 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
     private Path runILS() {
         long start = System.currentTimeMillis();
         Route solution;
-        if(shortestPath(s, d, null).getDistance() > MAX_COST) {
-            solution = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, MAX_COST);
+        if(shortestDistance(s, d, null) > MAX_COST) {
+            solution = Route.newRoute(this, arcs, graph, weighting, scoreWeighting, s, d, MAX_COST);
         } else {
             solution = initializeSolution();
 
             logger.info("Seed: " + SEED);
             for(int i = 1; i <= MAX_ITERATIONS; i++) {
-                double score = solution.getPath().getScore();
+                double score = solution.getPathScore();
+                Iteration.Stop converged = termination.update(score);
+                if(converged != Iteration.Stop.NONE) {
+                    iterations[i - 1] = new Iteration(score, (System.currentTimeMillis() - start) / 1000.0, converged);
+                    iterationCount = i;
+                    break;
+                }
+
                 logger.debug("Iteration " + i);
                 List<Arc> arcRemovalPool = solution.getCandidateArcsByIP();
                 logger.debug("Possible arcs to remove from solution: " + arcRemovalPool.size());
 
                 int randomIndex = random.nextInt(arcRemovalPool.size());
                 Arc arcToRemove = arcRemovalPool.remove(randomIndex);
-                List<Arc> inheritedCas = arcToRemove.getCas();
+                IntArrayList inheritedCas = arcs.getCas(arcToRemove);
+                DoubleArrayList inheritedRatios = arcs.getCasRatios(arcToRemove);
 
                 // Remaining budget after removing "arcToRemove" from solution
                 double pathBudget = solution.getRemainingCost() + arcToRemove.cost;
                 Route path = generatePath(solution.getPrev(arcToRemove), solution.getNext(arcToRemove),
-                        pathBudget, arcToRemove.score, inheritedCas);
+                        pathBudget, arcToRemove.score, inheritedCas, inheritedRatios);
 
                 if(!path.isEmpty()) {
                     logger.debug("Found path with with dist " + path.getCost());
                     int index = solution.removeArc(arcToRemove);
                     solution.insertRoute(index, path);
                     for(Arc arc : solution) {
+                        if(deadline.isExpired()) {
+                            break; // The search stops after this iteration, so the CAS won't be needed
+                        }
+
                         // Remaining budget after removing "arc" from solution
                         double newBudget = solution.getRemainingCost() + arc.cost;
 
@@ -139,17 +233,27 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
                             computeCAS(arc, inheritedCas, startCAS, endCAS, newBudget, solution);
                         } else {
                             double oldBudget = solution.getRemainingCost() + arcToRemove.cost;
-                            updateCAS(arc, inheritedCas, startCAS, endCAS, newBudget, oldBudget, solution);
+                            updateCAS(arc, inheritedCas, inheritedRatios, startCAS, endCAS, newBudget, oldBudget,
+                                    solution);
                         }
                     }
                 }
 
                 long elapsed = System.currentTimeMillis() - start;
-                iterations[i - 1] = new Iteration(score, elapsed / 1000.0);
+                Iteration.Stop stop = deadline.isExpired() ? Iteration.Stop.DEADLINE :
+                        i == MAX_ITERATIONS ? Iteration.Stop.MAX_ITERATIONS : Iteration.Stop.NONE;
+                iterations[i - 1] = new Iteration(score, elapsed / 1000.0, stop);
+                iterationCount = i;
+                if(stop != Iteration.Stop.NONE) {
+                    break;
+                }
             }
         }
 
         isFinished = true;
+        if(shortcuts != null) {
+            logger.info("CH queries: " + chQueries.sum() + ", repeated with the blacklist: " + fallbackQueries.sum());
+        }
 
         return solution.getPath();
     }
@@ -160,9 +264,9 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
      * @return Route.
      */
     private Route initializeSolution() {
-        Route route = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, MAX_COST);
+        Route route = Route.newRoute(this, arcs, graph, weighting, scoreWeighting, s, d, MAX_COST);
         // Add fake edge to start solution
-        Arc arc = new Arc(Arc.FAKE_ARC_ID, s, d, MAX_COST, 0, PointList.EMPTY);
+        Arc arc = arcs.createFake(s, d, MAX_COST);
         computeCAS(arc, null, s, d, MAX_COST, route);
         route.addArc(0, arc);
 
@@ -172,14 +276,16 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
     /**
      * Computes the Candidate Arc Set for the specified start, end, and cost parameters.
      *
-     * @param arc  Arc to set CAS on.
-     * @param cas  Current CAS. May be null.
-     * @param s    Start Node ID.
-     * @param d    End Node Id.
-     * @param cost Cost allowance.
+     * @param arc   Arc to set CAS on.
+     * @param cas   Current CAS as arc IDs. May be null.
+     * @param s     Start Node ID.
+     * @param d     End Node Id.
+     * @param cost  Cost allowance.
+     * @param route Route whose edges must not be used.
      */
-    private void computeCAS(Arc arc, @Nullable List<Arc> cas, int s, int d, double cost, Route route) {
-        List<Arc> result = new ArrayList<>();
+    private void computeCAS(Arc arc, @Nullable IntArrayList cas, int s, int d, double cost, Route route) {
+        IntArrayList result = new IntArrayList();
+        DoubleArrayList resultRatios = new DoubleArrayList();
 
         GHPoint focus1 = new GHPoint(nodeAccess.getLatitude(s), nodeAccess.getLongitude(s));
         GHPoint focus2 = new GHPoint(nodeAccess.getLatitude(d), nodeAccess.getLongitude(d));
@@ -187,16 +293,15 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
 
         // If we don't have a CAS yet
         // Fetch arcs from the graph using spatial indices
-        if(cas == null) {
-            // Since s is one of the foci of our ellipse, it will always be contained in it.
-            // Use s as the node which we start our search
-            cas = getAllArcs(ellipse, s);
-        }
+        // Since s is one of the foci of our ellipse, it will always be contained in it.
+        // Use s as the node which we start our search
+        List<Arc> pool = cas == null ? arcs.collectArcs(ellipse, s, MIN_ROAD_SCORE, MIN_ROAD_LENGTH) :
+                arcs.getArcs(cas);
 
-        logger.debug("Starting to compute CAS! num arcs: " + cas.size() + " cost: " + cost);
+        logger.debug("Starting to compute CAS! num arcs: " + pool.size() + " cost: " + cost);
 
-        outer:
-        for(Arc e : cas) {
+        List<Arc> candidates = new ArrayList<>();
+        for(Arc e : pool) {
 
             // Basic restrictions on attractive arcs
             if(e.score < MIN_ROAD_SCORE || e.cost < MIN_ROAD_LENGTH) {
@@ -204,164 +309,121 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
             }
 
             // Spatial-based feasibility checking
-            for(GHPoint3D ghPoint3D : e.points) {
-                if(!ellipse.contains(ghPoint3D.lat, ghPoint3D.lon)) {
-                    continue outer;
-                }
-            }
-
-            // Check arc feasibility
-            if(getPathCost(s, d, e, route) <= cost) {
-                calcQualityRatio(e, s, d, route);
-                result.add(e);
+            if(arcs.isInside(e, ellipse)) {
+                candidates.add(e);
             }
         }
 
-        logger.debug("Finished computing CAS! size: " + result.size());
-
-        arc.setCas(result);
-    }
-
-    /**
-     * Fetches all Arcs from the graph which are contained inside of the specified Shape.
-     *
-     * @param shape     Shape.
-     * @param startNode Node to start search from.
-     * @return Arc list.
-     */
-    private List<Arc> getAllArcs(final Ellipse shape, int startNode) {
-        logger.debug("Fetching arcs from graph!");
-        final List<Arc> arcs = new ArrayList<>();
-
-        BreadthFirstSearch bfs = new BreadthFirstSearch() {
-            final Shape localShape = shape;
-            final IntHashSet edgeIds = new IntHashSet();
+        // Drop arcs which can't fit into the budget before any exact search
+        candidates = bound.filter(s, d, candidates, cost);
 
-            @Override
-            protected boolean goFurther(int nodeId) {
-                return localShape.contains(nodeAccess.getLatitude(nodeId), nodeAccess.getLongitude(nodeId));
+        // Check arc feasibility, each arc needs its own blacklisted searches so they run in parallel
+        double[] ratios = evaluator.evaluate(candidates, searches,
+                (engine, e) -> calcQualityRatio(engine, e, s, d, route, cost));
+        for(int i = 0; i < candidates.size(); i++) {
+            if(!Double.isNaN(ratios[i])) {
+                result.add(candidates.get(i).id);
+                resultRatios.add(ratios[i]);
             }
+        }
 
-            @Override
-            protected boolean checkAdjacent(EdgeIteratorState edge) {
-                if(localShape.contains(nodeAccess.getLatitude(edge.getAdjNode()), nodeAccess.getLongitude(edge.getAdjNode()))) {
-                    int edgeId = edge.getEdge();
-                    if(!edgeIds.contains(edgeId)) {
-                        arcs.add(getArc(edge));
-                        edgeIds.add(edgeId);
-                    }
-                    return true;
-                }
-                return false;
-            }
-        };
-
-
-        bfs.start(outEdgeExplorer, startNode);
-
-        logger.debug("Got all arcs inside of ellipse! num: " + arcs.size());
-
-        return arcs;
-    }
-
-    /**
-     * Returns an Arc object instance from the specified EdgeIterator from the Graph.
-     *
-     * @param edgeIterator Edge
-     * @return Arc
-     */
-    private Arc getArc(EdgeIteratorState edgeIterator) {
-        int edge = edgeIterator.getEdge();
-        int baseNode = edgeIterator.getBaseNode();
-        int adjNode = edgeIterator.getAdjNode();
-        double edgeCost = edgeIterator.getDistance();
-
-        double edgeScore = scoreWeighting
-                .calcWeight(edgeIterator, false, baseNode);
+        logger.debug("Finished computing CAS! size: " + result.size());
 
-        return new Arc(edge, baseNode, adjNode, edgeCost, edgeScore, edgeIterator.fetchWayGeometry(0));
+        arcs.setCas(arc, result, resultRatios);
     }
 
     /**
      * Updates the Candidate Arc Set for the specified Arc.
      *
      * @param arc       Arc to update.
+     * @param cas       CAS to restrict as arc IDs.
+     * @param ratios    Quality Ratios of the CAS to restrict.
      * @param s         Start Node Id.
      * @param d         End Node Id.
      * @param newBudget New allowable budget.
      * @param oldBudget Old allowable budget.
+     * @param route     Route whose edges must not be used.
      */
-    private void updateCAS(@NotNull Arc arc, @NotNull List<Arc> cas, int s, int d, double newBudget,
-                           double oldBudget, Route route) {
+    private void updateCAS(@NotNull Arc arc, @NotNull IntArrayList cas, @NotNull DoubleArrayList ratios, int s, int d,
+                           double newBudget, double oldBudget, Route route) {
         // Restrict CAS using inherit property
         if(newBudget < oldBudget) {
-            List<Arc> newCas = new ArrayList<>();
-            for(Arc e : cas) {
+            IntHashSet fitting = new IntHashSet();
+            List<Arc> candidates = bound.filter(s, d, arcs.getArcs(cas), newBudget);
+            double[] costs = evaluator.evaluate(candidates, searches,
+                    (engine, e) -> getPathCost(engine, s, d, e, route, newBudget));
+            for(int i = 0; i < candidates.size(); i++) {
                 // Remove any arc whose path is too big
-                if(getPathCost(s, d, e, route) <= newBudget) {
-                    newCas.add(e);
+                if(costs[i] <= newBudget) {
+                    fitting.add(candidates.get(i).id);
                 }
             }
-            arc.setCas(newCas);
+            arcs.restrictCas(arc, cas, ratios, fitting::contains);
         } else if(newBudget > oldBudget) {
             computeCAS(arc, null, s, d, newBudget, route);
         }
     }
 
     /**
-     * Computes the Quality Ratio for the specified Arc.
+     * Computes the Quality Ratio for the specified Arc if the path s --> arc --> d fits into the budget. The legs of
+     * the feasibility check carry their scores, so no separate searches are needed for the ratio. Only the specified
+     * searches are used and nothing is stored, so this can run on any thread.
      *
-     * @param arc Arc.
-     * @param s   Start Node ID.
-     * @param d   End Node ID.
+     * @param searches Searches owned by the calling thread.
+     * @param arc      Arc.
+     * @param s        Start Node ID.
+     * @param d        End Node ID.
+     * @param route    Route whose edges must not be used.
+     * @param budget   Budget in meters.
+     * @return Quality Ratio or {@link Double#NaN} if the path goes over the budget.
      */
-    private void calcQualityRatio(@NotNull Arc arc, int s, int d, Route route) {
-        IntHashSet blacklist = route.getArcIdSet();
+    private double calcQualityRatio(@NotNull Searches searches, @NotNull Arc arc, int s, int d, Route route,
+                                    double budget) {
+        final Blacklist blacklist = route.newBlacklist();
         blacklist.add(arc.edgeId);
-        IlsPathCh sp1 = shortestPath(s, arc.baseNode, blacklist);
-        blacklist.addAll(sp1.getEdges());
-        IlsPathCh sp2 = shortestPath(arc.adjNode, d, blacklist);
-
-        double value = 0;
-
-        List<EdgeIteratorState> edges = sp1.calcEdges();
-        edges.addAll(sp2.calcEdges());
 
-        for(EdgeIteratorState edge : edges) {
-            value += scoreWeighting.calcWeight(edge, false, edge.getBaseNode());
+        BidirectionalSearch first = calc(searches, s, arc.baseNode, blacklist, budget - arc.cost);
+        if(!first.isFound()) {
+            return Double.NaN;
         }
-
-        value += arc.score;
-        value /= (sp1.getDistance() + arc.cost + sp2.getDistance());
-
-        if(Double.isNaN(value)) {
-            value = 0;
+        double distance = first.getDistance();
+        double score = first.getScore();
+        // The second leg must not reuse the edges of the first one
+        first.visitPath((edgeId, adjNode, prevEdgeId) -> blacklist.add(edgeId));
+
+        BidirectionalSearch second = calc(searches, arc.adjNode, d, blacklist, budget - arc.cost - distance);
+        if(!second.isFound()) {
+            return Double.NaN;
         }
+        distance += arc.cost + second.getDistance();
+        score += second.getScore();
 
-        arc.qualityRatio = value;
+        double value = (score + arc.score) / distance;
+        return Double.isNaN(value) ? 0 : value;
     }
 
     /**
      * Returns a list of Arcs from the specified CAS whose Quality Ratio scores are above the average.
      *
-     * @param cas CAS
+     * @param cas    CAS as arc IDs.
+     * @param ratios Quality Ratios of the CAS.
      * @return Arc list.
      */
-    private List<Arc> getCandidateArcsByQR(List<Arc> cas) {
-        List<Arc> arcs = new ArrayList<>();
+    private List<Arc> getCandidateArcsByQR(IntArrayList cas, DoubleArrayList ratios) {
+        List<Arc> result = new ArrayList<>();
         double avgQR = 0;
-        for(Arc ca : cas) {
-            avgQR += ca.qualityRatio;
+        for(int i = 0; i < cas.size(); i++) {
+            avgQR += ratios.get(i);
         }
         avgQR /= cas.size();
 
-        for(Arc ca : cas) {
-            if(ca.qualityRatio >= avgQR) {
-                arcs.add(ca);
+        for(int i = 0; i < cas.size(); i++) {
+            if(ratios.get(i) >= avgQR) {
+                result.add(arcs.get(cas.get(i)));
             }
         }
 
-        return arcs;
+        return result;
     }
 
     /**
@@ -372,56 +434,129 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
      * @param d         End Node Id.
      * @param dist      Allowable budget.
      * @param minProfit Minimum required score.
-     * @param cas       CAS
+     * @param cas       CAS as arc IDs.
+     * @param ratios    Quality Ratios of the CAS.
      * @return Route. May be empty!
      */
-    private Route generatePath(int s, int d, double dist, double minProfit, List<Arc> cas) {
+    private Route generatePath(int s, int d, double dist, double minProfit, IntArrayList cas,
+                               DoubleArrayList ratios) {
         logger.debug("Generating path! dist: " + dist + " minProfit: " + minProfit + " cas size: " + cas.size());
-        Route route = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, dist);
+        Route route = Route.newRoute(this, arcs, graph, weighting, scoreWeighting, s, d, dist);
 
-        List<Arc> arcs = getCandidateArcsByQR(cas);
-        while(!arcs.isEmpty() && route.getCost() < dist) {
-            int randomIndex = random.nextInt(arcs.size());
-            Arc e = arcs.remove(randomIndex);
+        List<Arc> candidates = getCandidateArcsByQR(cas, ratios);
+        while(!candidates.isEmpty() && route.getCost() < dist && !deadline.isExpired()) {
+            int randomIndex = random.nextInt(candidates.size());
+            Arc e = candidates.remove(randomIndex);
             route.insertArcAtMinPathSegment(e);
         }
 
         if(route.getScore() > minProfit) {
             return route;
         } else {
-            return Route.newRoute(this, graph, weighting, scoreWeighting, s, d, dist);
+            return Route.newRoute(this, arcs, graph, weighting, scoreWeighting, s, d, dist);
         }
 
     }
 
     @Override
     public double getPathCost(int s, int d, @NotNull Arc arc, Route route) {
-        IntHashSet blacklist = route.getArcIdSet();
+        return getPathCost(s, d, arc, route, Double.MAX_VALUE);
+    }
+
+    @Override
+    public double getPathCost(int s, int d, @NotNull Arc arc, Route route, double budget) {
+        return getPathCost(searches, s, d, arc, route, budget);
+    }
+
+    /**
+     * Returns the total distance of the path s --> arc --> d if it fits into the budget. Only the specified searches
+     * are used, so this can run on any thread.
+     */
+    private double getPathCost(Searches searches, int s, int d, @NotNull Arc arc, Route route, double budget) {
+        final Blacklist blacklist = route.newBlacklist();
         blacklist.add(arc.edgeId);
-        IlsPathCh path1 = shortestPath(s, arc.baseNode, blacklist);
-        blacklist.addAll(path1.getEdges());
-        IlsPathCh path2 = shortestPath(arc.adjNode, d, blacklist);
+        BidirectionalSearch first = calc(searches, s, arc.baseNode, blacklist, budget - arc.cost);
+        if(!first.isFound()) {
+            return Double.MAX_VALUE;
+        }
 
-        if(path1.isFound() && path2.isFound()) {
-            return path1.getDistance() + arc.cost + path2.getDistance();
-        } else {
+        // The second leg may not reuse edges of the first one, but neither leg needs a Path object
+        double distance = first.getDistance();
+        first.visitPath((edgeId, adjNode, prevEdgeId) -> blacklist.add(edgeId));
+        double second = calc(searches, arc.adjNode, d, blacklist, budget - arc.cost - distance).getDistance();
+        if(second == Double.MAX_VALUE) {
             return Double.MAX_VALUE;
         }
+
+        return distance + arc.cost + second;
+    }
+
+    @Override
+    public IlsPathCh shortestPath(int s, int d, @Nullable Blacklist blacklist) {
+        BidirectionalSearch result = calc(searches, s, d, blacklist, Double.MAX_VALUE);
+        final IlsPathCh path = new IlsPathCh(graph, weighting, scoreWeighting);
+        result.visitPath(path::processEdge);
+
+        return (IlsPathCh) path.setEndNode(d)
+                .setFromNode(s)
+                .setFound(result.isFound());
     }
 
     @Override
-    public IlsPathCh shortestPath(int s, int d, @Nullable IntHashSet blacklist) {
-        EdgeFilter filter = edgeFilter;
-        if(blacklist != null) {
-            filter = new BlacklistEdgeFilter(edgeFilter, blacklist);
+    public double shortestDistance(int s, int d, @Nullable Blacklist blacklist) {
+        return shortestDistance(s, d, blacklist, Double.MAX_VALUE);
+    }
+
+    @Override
+    public double shortestDistance(int s, int d, @Nullable Blacklist blacklist, double maxDistance) {
+        return calc(searches, s, d, blacklist, maxDistance).getDistance();
+    }
+
+    /**
+     * Runs a blacklisted shortest path query bounded by the maximum distance and returns the search which holds the
+     * result. The result is only valid until the next query.
+     */
+    private BidirectionalSearch calc(Searches searches, int s, int d, @Nullable Blacklist blacklist,
+                                     double maxDistance) {
+        if(searches.fallback == null) {
+            searches.search.calc(s, d, blacklist == null ? null : new BlacklistEdgeFilter(edgeFilter, blacklist),
+                    maxDistance);
+            return searches.search;
         }
 
-        RoutingAlgorithm search =
-                new IlsDijkstraSearch(graph,
-                        weighting, TraversalMode.NODE_BASED)
-                        .setEdgeFilter(filter);
+        // The unrestricted shortest path is also the shortest one avoiding the blacklist if it doesn't use a
+        // blacklisted edge, and if it doesn't fit into the budget no restricted path does either
+        chQueries.increment();
+        searches.search.calc(s, d, null, maxDistance);
+        if(blacklist == null || !searches.search.anyEdgeMatches(edge -> shortcuts.isShortcut(edge) ?
+                blacklist.isCoveredBy(shortcuts, edge) : blacklist.contains(edge))) {
+            return searches.search;
+        }
+
+        fallbackQueries.increment();
+        searches.fallback.calc(s, d, new BlacklistEdgeFilter(edgeFilter, blacklist), maxDistance);
+        return searches.fallback;
+    }
+
+    /**
+     * Searches used by one thread. Their workspaces are pooled per thread, so they must be released on the thread
+     * which created them.
+     */
+    private static final class Searches {
+        final BidirectionalSearch search;
+        final BidirectionalSearch fallback; // Dijkstra used when the CH path uses a blacklisted edge. May be null.
+
+        Searches(BidirectionalSearch search, @Nullable BidirectionalSearch fallback) {
+            this.search = search;
+            this.fallback = fallback;
+        }
 
-        return (IlsPathCh) search.calcPath(s, d);
+        void release() {
+            search.release();
+            if(fallback != null) {
+                fallback.release();
+            }
+        }
     }
 
     // Unused
@@ -443,6 +578,6 @@ public class NOBIteratedLocalSearch extends AbstractRoutingAlgorithm implements
 
     @Override
     public Iteration[] getIterationInfo() {
-        return iterations;
+        return Arrays.copyOf(iterations, iterationCount);
     }
 }
@@ -1,9 +1,10 @@
 package com.graphhopper.routing.ils.ls.backtrack;
 
-import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ils.IlsPath;
 import com.graphhopper.routing.ils.ls.Arc;
+import com.graphhopper.routing.ils.ls.ArcPositions;
+import com.graphhopper.routing.ils.ls.ArcState;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
@@ -27,18 +28,26 @@ final class Route implements Iterable<Arc> {
     private Weighting timeWeighting;
     private Weighting scoreWeighting;
     private ShortestPathCalculator sp;
+    private ArcState arcState; // CAS and Improve Potential of the arcs
     private final int s, d; // Start & End Node IDs
     private final double MAX_COST;
 
     private List<Arc> arcs; // List of "attractive arcs" in the Route
+    private ArcPositions positions; // Index of the arcs by ID
     private List<IlsPathCh> blankSegments; // List of shortest paths connecting non-contiguous attractive arcs.
+    private EdgeUsage usage; // Edges of all arcs and blank path segments
     private double cost, score; // Current
+    private double pathScore; // Score of all edges, including the blank path segments
+    private double improvePotentialSum; // Stored Improve Potential of all arcs, counted once per position
 
-    private Route(ShortestPathCalculator shortestPathCalculator, Graph graph, Weighting timeWeighting,
-                  Weighting scoreWeighting, int s, int d, double maxCost) {
+    private Route(ShortestPathCalculator shortestPathCalculator, ArcState arcState, Graph graph,
+                  Weighting timeWeighting, Weighting scoreWeighting, int s, int d, double maxCost) {
         sp = shortestPathCalculator;
+        this.arcState = arcState;
         arcs = new ArrayList<>();
+        positions = new ArcPositions(arcs);
         blankSegments = new ArrayList<>();
+        usage = new EdgeUsage();
         cost = 0;
         score = 0;
         this.s = s;
@@ -53,6 +62,7 @@ final class Route implements Iterable<Arc> {
      * Static factory method for creating a new Route instance.
      *
      * @param sp             Interface which can calculate Shortest Paths.
+     * @param arcState       State of the arcs of the current query.
      * @param graph          Graph.
      * @param weighting      Weighting used to calculate distance of added arcs.
      * @param scoreWeighting Weighting used to calculate score of added arcs.
@@ -60,10 +70,10 @@ final class Route implements Iterable<Arc> {
      * @param d              End Node ID.
      * @return New Route Instance.
      */
-    static Route newRoute(@NotNull ShortestPathCalculator sp, @NotNull Graph graph,
+    static Route newRoute(@NotNull ShortestPathCalculator sp, @NotNull ArcState arcState, @NotNull Graph graph,
                           @NotNull Weighting weighting, @NotNull Weighting scoreWeighting,
                           int s, int d, double maxCost) {
-        return new Route(sp, graph, weighting, scoreWeighting, s, d, maxCost);
+        return new Route(sp, arcState, graph, weighting, scoreWeighting, s, d, maxCost);
     }
 
     /**
@@ -79,11 +89,16 @@ final class Route implements Iterable<Arc> {
             throw new IndexOutOfBoundsException(String.format("index %d, length %d", index, length));
         }
 
-        updatePathSegments(index, arc, arc, new IntHashSet());
+        updatePathSegments(index, arc, arc);
 
         arcs.add(index, arc);
+        positions.invalidate();
+        improvePotentialSum += arcState.getImprovePotential(arc);
+        invalidateImprovePotentials();
+        usage.add(arc.edgeId);
         cost += arc.cost;
         score += arc.score;
+        pathScore += arc.score;
     }
 
     /**
@@ -93,7 +108,7 @@ final class Route implements Iterable<Arc> {
      * @return Index of removed Arc. Returns -1 if Arc was not in the current Route.
      */
     int removeArc(@NotNull Arc a) {
-        int index = arcs.indexOf(a);
+        int index = positions.indexOf(a);
 
         // Short circuit if Arc is not present in Route
         if(index == -1) {
@@ -103,8 +118,15 @@ final class Route implements Iterable<Arc> {
         // Remove two path segments surrounding Arc
         IlsPathCh segment1 = blankSegments.remove(index);
         IlsPathCh segment2 = blankSegments.remove(index);
+        usage.removeAll(segment1.getEdges());
+        usage.removeAll(segment2.getEdges());
         cost -= segment1.getDistance();
+        pathScore -= segment1.getScore();
         cost -= segment2.getDistance();
+        pathScore -= segment2.getScore();
+
+        // Allow the arc we are currently removing
+        usage.remove(a.edgeId);
 
         // If we have more than 1 arc we need to add a new path segment to join the Route
         int length = length();
@@ -124,20 +146,24 @@ final class Route implements Iterable<Arc> {
             }
 
             // Calculate and add new path segment
-            IntHashSet blacklist = getArcIdSet();
-            blacklist.removeAll(arcs.get(index).edgeId); // Allow the arc we are currently removing
-            IlsPathCh segment = sp.shortestPath(start, end, blacklist);
+            IlsPathCh segment = sp.shortestPath(start, end, newBlacklist());
 
             if(!segment.isFound()) {
                 throw new RuntimeException("BAD THINGS");
             }
             blankSegments.add(index, segment);
+            usage.addAll(segment.getEdges());
             cost += segment.getDistance();
+            pathScore += segment.getScore();
         }
 
         arcs.remove(index);
+        positions.invalidate();
+        improvePotentialSum -= arcState.getImprovePotential(a);
+        invalidateImprovePotentials();
         cost -= a.cost;
         score -= a.score;
+        pathScore -= a.score;
 
         return index;
     }
@@ -167,18 +193,27 @@ final class Route implements Iterable<Arc> {
 //            Arc first = route.arcs.get(0);
 //            Arc last = route.arcs.get(route.length() - 1);
 //
-//            updatePathSegments(index, first, last, route.getArcIdSet());
+//            updatePathSegments(index, first, last);
 
             // If non-empty, remove the previous blank path segment before inserting the new route
             if(length > 0) {
                 IlsPathCh removed = blankSegments.remove(index);
+                usage.removeAll(removed.getEdges());
                 cost -= removed.getDistance();
+                pathScore -= removed.getScore();
             }
 
             score += route.score;
             cost += route.cost;
+            pathScore += route.pathScore;
             arcs.addAll(index, route.arcs);
+            positions.invalidate();
+            for(Arc arc : route.arcs) {
+                improvePotentialSum += arcState.getImprovePotential(arc);
+            }
+            invalidateImprovePotentials();
             blankSegments.addAll(index, route.blankSegments);
+            usage.addAll(route.usage);
         }
     }
 
@@ -191,7 +226,7 @@ final class Route implements Iterable<Arc> {
      * @param left  Left bound of the Arc to be inserted.
      * @param right Right bound of the Arc to be inserted.
      */
-    private void updatePathSegments(int index, Arc left, Arc right, IntHashSet list) {
+    private void updatePathSegments(int index, Arc left, Arc right) {
         int length = length();
         int start = s, end = d;
 
@@ -204,20 +239,24 @@ final class Route implements Iterable<Arc> {
             end = arcs.get(index).baseNode;
         }
 
-        IntHashSet blacklist = getArcIdSet();
-        blacklist.addAll(list);
-        blacklist.addAll(left.edgeId, right.edgeId);
+        Blacklist blacklist = newBlacklist();
+        blacklist.add(left.edgeId);
+        blacklist.add(right.edgeId);
         IlsPathCh segment1 = sp.shortestPath(start, left.baseNode, blacklist);
         cost += segment1.getDistance();
+        pathScore += segment1.getScore();
 
         blacklist.addAll(segment1.getEdges());
         IlsPathCh segment2 = sp.shortestPath(right.adjNode, end, blacklist);
         cost += segment2.getDistance();
+        pathScore += segment2.getScore();
 
         // If non-empty, remove the previous blank path segment before inserting the two new ones
         if(length > 0) {
             IlsPathCh removed = blankSegments.remove(index);
+            usage.removeAll(removed.getEdges());
             cost -= removed.getDistance();
+            pathScore -= removed.getScore();
         }
 
         if(!segment1.isFound() || !segment2.isFound()) {
@@ -226,6 +265,8 @@ final class Route implements Iterable<Arc> {
 
         blankSegments.add(index, segment2);
         blankSegments.add(index, segment1);
+        usage.addAll(segment1.getEdges());
+        usage.addAll(segment2.getEdges());
     }
 
 
@@ -247,6 +288,16 @@ final class Route implements Iterable<Arc> {
         return score;
     }
 
+    /**
+     * Returns the score of all edges of the route, including the blank path segments. This is the score of the
+     * Path returned by {@link Route#getPath()} without building it.
+     *
+     * @return Sum of all edge scores in the Route.
+     */
+    double getPathScore() {
+        return pathScore;
+    }
+
     /**
      * Returns the leftover budget after subtracting the current Route's cost.
      *
@@ -265,9 +316,11 @@ final class Route implements Iterable<Arc> {
         IlsPath path = new IlsPath(graph, timeWeighting, scoreWeighting);
 
         // If we have a fake arc return no path
-        if(contains(new Arc(Arc.FAKE_ARC_ID, s, d, 0, 0, null))) {
-            path.setFound(false);
-            return path;
+        for(Arc arc : arcs) {
+            if(arc.isFake()) {
+                path.setFound(false);
+                return path;
+            }
         }
 
         for(int i = 0; i < blankSegments.size(); i++) {
@@ -305,43 +358,51 @@ final class Route implements Iterable<Arc> {
     }
 
     /**
-     * Returns a list of Arcs from the Route whose Improve Potential scores are above the average.
+     * Returns a list of Arcs from the Route whose Improve Potential scores are above the average. Only arcs whose
+     * neighbours or CAS changed, or all of them once the route changed, are computed again. The average comes from a
+     * maintained sum.
      *
      * @return Arc list.
      */
     List<Arc> getCandidateArcsByIP() {
         List<Arc> result = new ArrayList<>();
-        double avgIP = 0;
         for(Arc ca : arcs) {
             calcImprovePotential(ca);
-            avgIP += ca.improvePotential;
         }
-        avgIP /= arcs.size();
+        double avgIP = improvePotentialSum / arcs.size();
 
         for(Arc ca : arcs) {
-            if(ca.improvePotential >= avgIP) {
+            if(arcState.getImprovePotential(ca) >= avgIP) {
                 result.add(ca);
             }
         }
 
+        // Rounding of the maintained sum can put the average just above potentials which are all equal
+        if(result.isEmpty()) {
+            result.addAll(arcs);
+        }
+
         return result;
     }
 
     /**
-     * Calculates the Improve Potential score of a given arc.
+     * Calculates the Improve Potential score of a given arc unless the stored one is still current.
      *
      * @param arc Arc to calculate
      */
     private void calcImprovePotential(@NotNull Arc arc) {
         int v1 = getPrev(arc);
         int v2 = getNext(arc);
+        if(arcState.isImprovePotentialCurrent(arc, v1, v2)) {
+            return;
+        }
 
         double score = 0;
         double maxDist = 0;
 
         double dist = sp.getPathCost(v1, v2, arc, this);
 
-        for(Arc e : arc.getCas()) {
+        for(Arc e : arcState.getArcs(arcState.getCas(arc))) {
             score += e.score - arc.score;
             maxDist = Math.max(maxDist, sp.getPathCost(v1, v2, e, this));
         }
@@ -353,7 +414,18 @@ final class Route implements Iterable<Arc> {
             result = 0;
         }
 
-        arc.improvePotential = result;
+        improvePotentialSum += (result - arcState.getImprovePotential(arc)) * positions.count(arc);
+        arcState.setImprovePotential(arc, result, v1, v2);
+    }
+
+    /**
+     * The paths of the Improve Potential avoid the edges of this route, so any change of the route outdates all of
+     * them.
+     */
+    private void invalidateImprovePotentials() {
+        for(Arc arc : arcs) {
+            arcState.invalidateImprovePotential(arc);
+        }
     }
 
     /**
@@ -363,11 +435,11 @@ final class Route implements Iterable<Arc> {
      * @return Node ID
      */
     int getPrev(@NotNull Arc a) {
-        if(!contains(a)) {
+        int index = positions.indexOf(a);
+        if(index == -1) {
             throw new IllegalArgumentException("Arc is not in route!");
         }
 
-        int index = arcs.indexOf(a);
         return (index - 1 >= 0) ? arcs.get(index - 1).adjNode : s;
     }
 
@@ -378,11 +450,11 @@ final class Route implements Iterable<Arc> {
      * @return Node ID.
      */
     int getNext(@NotNull Arc a) {
-        if(!contains(a)) {
+        int index = positions.indexOf(a);
+        if(index == -1) {
             throw new IllegalArgumentException("Arc is not in route!");
         }
 
-        int index = arcs.indexOf(a);
         return (index + 1 <= length() - 1) ? arcs.get(index + 1).baseNode : d;
     }
 
@@ -393,7 +465,7 @@ final class Route implements Iterable<Arc> {
      * @return True if arc is in Route, else false.
      */
     boolean contains(@NotNull Arc a) {
-        return arcs.contains(a);
+        return positions.contains(a);
     }
 
     /**
@@ -419,26 +491,24 @@ final class Route implements Iterable<Arc> {
             int start = pathIndex == 0 ? s : arcs.get(pathIndex - 1).adjNode;
             int end = pathIndex == length() ? d : arcs.get(pathIndex).baseNode;
 
-            double pathCost = sp.getPathCost(start, end, arc, this);
             double limit = getRemainingCost() + minPathValue;
+            double pathCost = sp.getPathCost(start, end, arc, this, limit);
             if(pathCost <= limit) {
                 addArc(pathIndex, arc);
             }
 
-        } else if(sp.getPathCost(s, d, arc, this) <= getRemainingCost()) {
+        } else if(sp.getPathCost(s, d, arc, this, getRemainingCost()) <= getRemainingCost()) {
             addArc(0, arc);
         }
     }
 
-    public IntHashSet getArcIdSet() {
-        IntHashSet results = new IntHashSet();
-        for(int i = 0; i < blankSegments.size(); i++) {
-            results.addAll(blankSegments.get(i).getEdges());
-            if(i < arcs.size()) {
-                results.add(arcs.get(i).edgeId);
-            }
-        }
-        return results;
+    /**
+     * Returns a new blacklist of all edges used by the Route. Extra edges added to it don't affect the Route.
+     *
+     * @return Blacklist which is only valid until the Route changes.
+     */
+    Blacklist newBlacklist() {
+        return new Blacklist(usage.getEdges());
     }
 
     @Override
@@ -1,15 +1,37 @@
 package com.graphhopper.routing.ils.ls.backtrack;
 
-import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.ils.ls.Arc;
 import com.sun.istack.internal.NotNull;
 
 public interface ShortestPathCalculator {
 
     /**
-     * Returns the shortest distance in meters between two nodes of the graph.
+     * Returns the shortest path between two nodes of the graph which doesn't use any blacklisted edge.
      */
-    IlsPathCh shortestPath(int s, int d, IntHashSet blacklist);
+    IlsPathCh shortestPath(int s, int d, Blacklist blacklist);
+
+    /**
+     * Returns the shortest distance in meters between two nodes of the graph which doesn't use any blacklisted edge.
+     * Unlike {@link #shortestPath(int, int, Blacklist)} no path object is built.
+     *
+     * @param s         Start node ID.
+     * @param d         End node ID.
+     * @param blacklist Edges which must not be used. May be null.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if there is no path.
+     */
+    double shortestDistance(int s, int d, Blacklist blacklist);
+
+    /**
+     * Returns the shortest distance in meters between two nodes of the graph which doesn't use any blacklisted edge
+     * if it doesn't exceed the specified maximum. The search stops as soon as no path within the maximum can exist.
+     *
+     * @param s           Start node ID.
+     * @param d           End node ID.
+     * @param blacklist   Edges which must not be used. May be null.
+     * @param maxDistance Maximum distance in meters.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if there is no path within the maximum.
+     */
+    double shortestDistance(int s, int d, Blacklist blacklist, double maxDistance);
 
     /**
      * Returns the total distance in meters of the path s --> arc --> d where "-->" is shortest path.
@@ -21,4 +43,17 @@ public interface ShortestPathCalculator {
      */
     double getPathCost(int s, int d, @NotNull Arc arc, Route route);
 
+    /**
+     * Returns the total distance in meters of the path s --> arc --> d if it fits into the specified budget. Both
+     * shortest path legs share the budget, so the second leg only gets what is left over by the first one.
+     *
+     * @param s      Start node ID.
+     * @param d      End node ID.
+     * @param arc    Arc.
+     * @param route  Route whose edges must not be used.
+     * @param budget Budget in meters.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the path goes over the budget.
+     */
+    double getPathCost(int s, int d, @NotNull Arc arc, Route route, double budget);
+
 }
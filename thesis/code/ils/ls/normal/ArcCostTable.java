@@ -0,0 +1,49 @@
+package com.graphhopper.routing.ils.ls.normal;
+
+import com.graphhopper.routing.ils.ls.Arc;
+import com.graphhopper.routing.ils.search.DistanceTable;
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Shortest path distances from a start node to the base node of a set of arcs and from the adjacent node of those
+ * arcs to an end node. Answers many s --> arc --> d queries which share s and d without running a search per arc.
+ */
+final class ArcCostTable {
+
+    private final DistanceTable fromStart;
+    private final DistanceTable toEnd;
+
+    ArcCostTable(@NotNull DistanceTable fromStart, @NotNull DistanceTable toEnd) {
+        this.fromStart = fromStart;
+        this.toEnd = toEnd;
+    }
+
+    /**
+     * Returns the shortest path distance from the start node to the base node of the arc.
+     */
+    double getDistanceToArc(@NotNull Arc arc) {
+        return fromStart.getDistance(arc.baseNode);
+    }
+
+    /**
+     * Returns the shortest path distance from the adjacent node of the arc to the end node.
+     */
+    double getDistanceFromArc(@NotNull Arc arc) {
+        return toEnd.getDistance(arc.adjNode);
+    }
+
+    /**
+     * Returns the total distance in meters of the path s --> arc --> d where "-->" is shortest path.
+     *
+     * @param arc Arc which was part of the table query.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the arc can't be reached.
+     */
+    double getPathCost(@NotNull Arc arc) {
+        double toArc = getDistanceToArc(arc);
+        double fromArc = getDistanceFromArc(arc);
+        if(toArc == Double.MAX_VALUE || fromArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        return toArc + arc.cost + fromArc;
+    }
+}
@@ -1,29 +1,39 @@
 package com.graphhopper.routing.ils.ls.normal;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
-import com.graphhopper.routing.DijkstraBidirectionCH;
 import com.graphhopper.routing.Path;
-import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.routing.ils.Deadline;
 import com.graphhopper.routing.ils.IlsAlgorithm;
+import com.graphhopper.routing.ils.IlsParameters;
+import com.graphhopper.routing.ils.IlsPath;
+import com.graphhopper.routing.ils.IlsStorage;
 import com.graphhopper.routing.ils.Iteration;
+import com.graphhopper.routing.ils.TerminationPolicy;
 import com.graphhopper.routing.ils.ls.Arc;
+import com.graphhopper.routing.ils.ls.ArcState;
 import com.graphhopper.routing.ils.ls.Ellipse;
+import com.graphhopper.routing.ils.ls.ParallelArcEvaluator;
+import com.graphhopper.routing.ils.ls.PathCostBound;
+import com.graphhopper.routing.ils.search.BidirectionalSearch;
+import com.graphhopper.routing.ils.search.OneToManyCH;
+import com.graphhopper.routing.ils.search.ShortcutScoreIndex;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
-import com.graphhopper.util.shapes.GHPoint3D;
-import com.graphhopper.util.shapes.Shape;
 import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -42,15 +52,23 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
     private final int MIN_ROAD_LENGTH;
     private final double MAX_COST;
     private final int MAX_ITERATIONS;
+    private final long TIME_LIMIT;
     private final long SEED;
 
-    private Graph CHGraph; // Graph used for CH Dijkstra search
-    private EdgeFilter levelEdgeFilter; // Used for CH Dijkstra search
     private Weighting scoreWeighting; // Used for scoring arcs
+    private ShortestPathCache sp; // Memoizes CH queries for this request
+    private OneToManyCH oneToMany; // Used for computing many path costs at once
+    private BidirectionalSearch search; // Reused for every CH query
+    private PathCostBound bound; // Rejects arcs before any exact search
+    private ParallelArcEvaluator<BidirectionalSearch> evaluator; // Spreads Quality Ratio searches over threads
+    private ArcState arcs; // IDs, geometry and metrics of the arcs seen by this request
     private int s, d; // Start and End Node IDs
     private Random random;
     private Iteration[] iterations; // Keep track of score at each iteration
+    private int iterationCount; // Number of iterations which ran
 
+    private Deadline deadline = Deadline.none(); // Stops the search once the time limit has passed
+    private TerminationPolicy termination; // Stops the search once it has converged
     private boolean isFinished = false;
 
     ////////////////////////////////////////////
@@ -77,26 +95,46 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
      * Creates a new ILS algorithm instance.
      *
      * @param graph           Graph to run algorithm on.
-     * @param weighting       Weighting to calculate costs.
+     * @param weighting       Shortest distance weighting used to calculate costs.
      * @param levelEdgeFilter Edge filter for CH shortest path computation
      * @param params          Parameters map.
      */
     public LSIteratedLocalSearch(Graph graph, Weighting weighting,
                                  EdgeFilter levelEdgeFilter, PMap params) {
+        this(graph, weighting, levelEdgeFilter, new IlsStorage(), params);
+    }
+
+    /**
+     * Creates a new ILS algorithm instance. If the storage contains a
+     * {@link com.graphhopper.routing.ils.search.LandmarkTable} it is used to reject infeasible arcs without a search.
+     *
+     * @param graph           Graph to run algorithm on.
+     * @param weighting       Shortest distance weighting used to calculate costs.
+     * @param levelEdgeFilter Edge filter for CH shortest path computation
+     * @param storage         Precomputed graph data.
+     * @param params          Parameters map.
+     */
+    public LSIteratedLocalSearch(Graph graph, Weighting weighting, EdgeFilter levelEdgeFilter,
+                                 @NotNull IlsStorage storage, PMap params) {
         super(graph.getBaseGraph(), weighting, TraversalMode.EDGE_BASED_1DIR);
 
-        CHGraph = graph;
-        this.levelEdgeFilter = levelEdgeFilter;
         scoreWeighting = new BikePriorityWeighting(flagEncoder);
+        oneToMany = new OneToManyCH(graph, weighting, flagEncoder, levelEdgeFilter);
+        bound = new PathCostBound(nodeAccess, storage.getLandmarkTable());
 
         MAX_COST = params.getDouble(MAX_DIST, DEFAULT_MAX_DIST);
         MAX_ITERATIONS = params.getInt(Parameters.Routing.MAX_ITERATIONS, DEFAULT_MAX_ITERATIONS);
+        TIME_LIMIT = params.getLong(IlsParameters.TIME_LIMIT, IlsParameters.DEFAULT_TIME_LIMIT);
+        termination = TerminationPolicy.create(params);
         MIN_ROAD_SCORE = params.getDouble(Parameters.Routing.MIN_ROAD_SCORE, DEFAULT_MIN_ROAD_SCORE);
         MIN_ROAD_LENGTH = params.getInt(Parameters.Routing.MIN_ROAD_LENGTH, DEFAULT_MIN_ROAD_LENGTH);
         SEED = params.getLong(Parameters.Routing.SEED, System.currentTimeMillis());
 
         random = new Random(SEED);
         iterations = new Iteration[MAX_ITERATIONS];
+        sp = new ShortestPathCache(this,
+                params.getInt(IlsParameters.PATH_CACHE_SIZE, IlsParameters.DEFAULT_PATH_CACHE_SIZE),
+                params.getInt(IlsParameters.DISTANCE_CACHE_SIZE, IlsParameters.DEFAULT_DISTANCE_CACHE_SIZE));
 
         ////////////////////////////////////////////
         // TEST CODE
@@ -112,6 +150,18 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
         if(params.getBool(USE_SCALED_SCORES, false)) {
             scoreWeighting = new ScaledBikePriorityWeighting(flagEncoder);
         }
+
+        arcs = new ArcState(this.graph, scoreWeighting, storage.getArcIndex());
+        ShortcutScoreIndex shortcutScores = BikePriorityWeighting.isPlain(scoreWeighting) ?
+                storage.getShortcutScoreIndex() : null;
+        search = new BidirectionalSearch(graph, weighting, flagEncoder, levelEdgeFilter, scoreWeighting,
+                shortcutScores);
+        evaluator = new ParallelArcEvaluator<>(
+                () -> new BidirectionalSearch(graph, weighting, flagEncoder, levelEdgeFilter, scoreWeighting,
+                        shortcutScores),
+                BidirectionalSearch::release,
+                params.getInt(IlsParameters.CAS_THREADS, Runtime.getRuntime().availableProcessors()),
+                params.getInt(IlsParameters.CAS_MIN_CHUNK_SIZE, IlsParameters.DEFAULT_CAS_MIN_CHUNK_SIZE));
     }
 
     /**
@@ -126,7 +176,13 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
         checkAlreadyRun();
         s = from;
         d = to;
-        return runILS();
+        deadline = Deadline.after(TIME_LIMIT);
+        evaluator.setDeadline(deadline);
+        try {
+            return runILS();
+        } finally {
+            search.release();
+        }
     }
 
     /**
@@ -135,20 +191,28 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
     private Path runILS() {
         long start = System.currentTimeMillis();
         Route solution;
-        if(shortestPath(s, d).getDistance() > MAX_COST) {
-            solution = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, MAX_COST);
+        if(sp.shortestDistance(s, d) > MAX_COST) {
+            solution = Route.newRoute(sp, arcs, graph, weighting, scoreWeighting, s, d, MAX_COST);
         } else {
             solution = initializeSolution();
             logger.info("Seed: " + SEED);
             for(int i = 1; i <= MAX_ITERATIONS; i++) {
-                double score = solution.getPath().getScore();
+                double score = solution.getPathScore();
+                Iteration.Stop converged = termination.update(score);
+                if(converged != Iteration.Stop.NONE) {
+                    iterations[i - 1] = new Iteration(score, (System.currentTimeMillis() - start) / 1000.0, converged);
+                    iterationCount = i;
+                    break;
+                }
+
                 logger.debug("Iteration " + i);
                 List<Arc> arcRemovalPool = solution.getCandidateArcsByIP();
                 logger.debug("Possible arcs to remove from solution: " + arcRemovalPool.size());
 
                 int randomIndex = random.nextInt(arcRemovalPool.size());
                 Arc arcToRemove = arcRemovalPool.remove(randomIndex);
-                List<Arc> inheritedCas = arcToRemove.getCas();
+                IntArrayList inheritedCas = arcs.getCas(arcToRemove);
+                DoubleArrayList inheritedRatios = arcs.getCasRatios(arcToRemove);
 
                 // Remaining budget after removing "arcToRemove" from solution
                 double pathBudget = solution.getRemainingCost() + arcToRemove.cost;
@@ -164,13 +228,17 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
                 }
 
                 Route path = generatePath(solution.getPrev(arcToRemove), solution.getNext(arcToRemove),
-                        pathBudget, arcToRemove.score, inheritedCas);
+                        pathBudget, arcToRemove.score, inheritedCas, inheritedRatios);
 
                 if(!path.isEmpty()) {
                     logger.debug("Found path with with dist " + path.getCost());
                     int index = solution.removeArc(arcToRemove);
                     solution.insertRoute(index, path);
                     for(Arc arc : solution) {
+                        if(deadline.isExpired()) {
+                            break; // The search stops after this iteration, so the CAS won't be needed
+                        }
+
                         // Remaining budget after removing "arc" from solution
                         double newBudget = solution.getRemainingCost() + arc.cost;
 
@@ -182,17 +250,24 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
                             computeCAS(arc, inheritedCas, startCAS, endCAS, newBudget);
                         } else {
                             double oldBudget = solution.getRemainingCost() + arcToRemove.cost;
-                            updateCAS(arc, inheritedCas, startCAS, endCAS, newBudget, oldBudget);
+                            updateCAS(arc, inheritedCas, inheritedRatios, startCAS, endCAS, newBudget, oldBudget);
                         }
                     }
                 }
 
                 long elapsed = System.currentTimeMillis() - start;
-                iterations[i - 1] = new Iteration(score, elapsed / 1000.0);
+                Iteration.Stop stop = deadline.isExpired() ? Iteration.Stop.DEADLINE :
+                        i == MAX_ITERATIONS ? Iteration.Stop.MAX_ITERATIONS : Iteration.Stop.NONE;
+                iterations[i - 1] = new Iteration(score, elapsed / 1000.0, stop);
+                iterationCount = i;
+                if(stop != Iteration.Stop.NONE) {
+                    break;
+                }
             }
         }
 
         isFinished = true;
+        logger.info("Shortest path cache: " + sp);
 
         return solution.getPath();
     }
@@ -203,9 +278,9 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
      * @return Route.
      */
     private Route initializeSolution() {
-        Route route = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, MAX_COST);
+        Route route = Route.newRoute(sp, arcs, graph, weighting, scoreWeighting, s, d, MAX_COST);
         // Add fake edge to start solution
-        Arc arc = new Arc(Arc.FAKE_ARC_ID, s, d, MAX_COST, 0, PointList.EMPTY);
+        Arc arc = arcs.createFake(s, d, MAX_COST);
         computeCAS(arc, null, s, d, MAX_COST);
         route.addArc(0, arc);
 
@@ -216,13 +291,14 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
      * Computes the Candidate Arc Set for the specified start, end, and cost parameters.
      *
      * @param arc  Arc to set CAS on.
-     * @param cas  Current CAS. May be null.
+     * @param cas  Current CAS as arc IDs. May be null.
      * @param s    Start Node ID.
      * @param d    End Node Id.
      * @param cost Cost allowance.
      */
-    private void computeCAS(Arc arc, @Nullable List<Arc> cas, int s, int d, double cost) {
-        List<Arc> result = new ArrayList<>();
+    private void computeCAS(Arc arc, @Nullable IntArrayList cas, int s, int d, double cost) {
+        IntArrayList result = new IntArrayList();
+        DoubleArrayList ratios = new DoubleArrayList();
 
         GHPoint focus1 = new GHPoint(nodeAccess.getLatitude(s), nodeAccess.getLongitude(s));
         GHPoint focus2 = new GHPoint(nodeAccess.getLatitude(d), nodeAccess.getLongitude(d));
@@ -230,175 +306,136 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
 
         // If we don't have a CAS yet
         // Fetch arcs from the graph using spatial indices
-        if(cas == null) {
-            // Since s is one of the foci of our ellipse, it will always be contained in it.
-            // Use s as the node which we start our search
-            cas = getAllArcs(ellipse, s);
-        }
-
-        logger.debug("Starting to compute CAS! num arcs: " + cas.size() + " cost: " + cost);
-
-        outer:
-        for(Arc e : cas) {
-
-            // Basic restrictions on attractive arcs
-            if(e.score > MIN_ROAD_SCORE && e.cost > MIN_ROAD_LENGTH) {
-                // Spatial-based feasibility checking
-                for(GHPoint3D ghPoint3D : e.points) {
-                    if(!ellipse.contains(ghPoint3D.lat, ghPoint3D.lon)) {
-                        continue outer;
-                    }
-                }
-
-                // Check arc feasibility
-                if(getPathCost(s, d, e) <= cost) {
-                    calcQualityRatio(e, s, d);
-                    result.add(e);
-                }
+        // Since s is one of the foci of our ellipse, it will always be contained in it.
+        // Use s as the node which we start our search
+        List<Arc> pool = cas == null ? arcs.collectArcs(ellipse, s, MIN_ROAD_SCORE, MIN_ROAD_LENGTH) :
+                arcs.getArcs(cas);
+
+        logger.debug("Starting to compute CAS! num arcs: " + pool.size() + " cost: " + cost);
+
+        List<Arc> candidates = new ArrayList<>();
+        for(Arc e : pool) {
+            // Basic restrictions on attractive arcs and spatial-based feasibility checking
+            if(e.score > MIN_ROAD_SCORE && e.cost > MIN_ROAD_LENGTH && arcs.isInside(e, ellipse)) {
+                candidates.add(e);
             }
         }
 
-        logger.debug("Finished computing CAS! size: " + result.size());
-
-        arc.setCas(result);
-    }
-
-    /**
-     * Fetches all Arcs from the graph which are contained inside of the specified Shape.
-     *
-     * @param shape     Shape.
-     * @param startNode Node to start search from.
-     * @return Arc list.
-     */
-    private List<Arc> getAllArcs(final Ellipse shape, int startNode) {
-        logger.debug("Fetching arcs from graph!");
-        final List<Arc> arcs = new ArrayList<>();
-
-        BreadthFirstSearch bfs = new BreadthFirstSearch() {
-            final Shape localShape = shape;
-            final IntHashSet edgeIds = new IntHashSet();
+        // Drop arcs which can't fit into the budget before any exact search
+        candidates = bound.filter(s, d, candidates, cost);
 
-            @Override
-            protected boolean goFurther(int nodeId) {
-                return localShape.contains(nodeAccess.getLatitude(nodeId), nodeAccess.getLongitude(nodeId));
+        // Check arc feasibility
+        ArcCostTable table = sp.getArcCostTable(s, d, candidates, cost);
+        List<Arc> feasible = new ArrayList<>();
+        for(Arc e : candidates) {
+            if(table.getPathCost(e) <= cost) {
+                feasible.add(e);
             }
+        }
 
-            @Override
-            protected boolean checkAdjacent(EdgeIteratorState edge) {
-                if(localShape.contains(nodeAccess.getLatitude(edge.getAdjNode()), nodeAccess.getLongitude(edge.getAdjNode()))) {
-                    int edgeId = edge.getEdge();
-                    if(!edgeIds.contains(edgeId)) {
-                        arcs.add(getArc(edge));
-                        edgeIds.add(edgeId);
-                    }
-                    return true;
-                }
-                return false;
+        // Path scores need two searches per arc, so they are computed in parallel and merged in order
+        double[] scores = evaluator.evaluate(feasible, search, (engine, e) -> getPathScore(engine, s, d, e));
+        for(int i = 0; i < feasible.size(); i++) {
+            if(Double.isNaN(scores[i])) {
+                continue; // Skipped because of the time limit
             }
-        };
-
-
-        bfs.start(outEdgeExplorer, startNode);
-
-        logger.debug("Got all arcs inside of ellipse! num: " + arcs.size());
-
-        return arcs;
-    }
-
-    /**
-     * Returns an Arc object instance from the specified EdgeIterator from the Graph.
-     *
-     * @param edgeIterator Edge
-     * @return Arc
-     */
-    private Arc getArc(EdgeIteratorState edgeIterator) {
-        int edge = edgeIterator.getEdge();
-        int baseNode = edgeIterator.getBaseNode();
-        int adjNode = edgeIterator.getAdjNode();
-        double edgeCost = edgeIterator.getDistance();
+            Arc e = feasible.get(i);
+            result.add(e.id);
+            ratios.add(calcQualityRatio(e, scores[i], table));
+        }
 
-        double edgeScore = scoreWeighting
-                .calcWeight(edgeIterator, false, baseNode);
+        logger.debug("Finished computing CAS! size: " + result.size());
 
-        return new Arc(edge, baseNode, adjNode, edgeCost, edgeScore, edgeIterator.fetchWayGeometry(0));
+        arcs.setCas(arc, result, ratios);
     }
 
     /**
      * Updates the Candidate Arc Set for the specified Arc.
      *
      * @param arc       Arc to update.
+     * @param cas       CAS to restrict as arc IDs.
+     * @param ratios    Quality Ratios of the CAS to restrict.
      * @param s         Start Node Id.
      * @param d         End Node Id.
      * @param newBudget New allowable budget.
      * @param oldBudget Old allowable budget.
      */
-    private void updateCAS(@NotNull Arc arc, @NotNull List<Arc> cas, int s, int d, double newBudget, double oldBudget) {
+    private void updateCAS(@NotNull Arc arc, @NotNull IntArrayList cas, @NotNull DoubleArrayList ratios, int s, int d,
+                           double newBudget, double oldBudget) {
         // Restrict CAS using inherit property
         if(newBudget < oldBudget) {
-            List<Arc> newCas = new ArrayList<>();
-            for(Arc e : cas) {
+            IntHashSet fitting = new IntHashSet();
+            List<Arc> candidates = bound.filter(s, d, arcs.getArcs(cas), newBudget);
+            ArcCostTable table = sp.getArcCostTable(s, d, candidates, newBudget);
+            for(Arc e : candidates) {
                 // Remove any arc whose path is too big
-                if(getPathCost(s, d, e) <= newBudget) {
-                    newCas.add(e);
+                if(table.getPathCost(e) <= newBudget) {
+                    fitting.add(e.id);
                 }
             }
-            arc.setCas(newCas);
+            arcs.restrictCas(arc, cas, ratios, fitting::contains);
         } else if(newBudget > oldBudget) {
             computeCAS(arc, null, s, d, newBudget);
         }
     }
 
     /**
-     * Computes the Quality Ratio for the specified Arc.
+     * Returns the total score of the path s --> arc --> d. Only the specified search is used, so this can run on any
+     * thread.
      *
-     * @param arc Arc.
-     * @param s   Start Node ID.
-     * @param d   End Node ID.
+     * @param search Search owned by the calling thread.
+     * @param s      Start Node ID.
+     * @param d      End Node ID.
+     * @param arc    Arc.
+     * @return Score
      */
-    private void calcQualityRatio(@NotNull Arc arc, int s, int d) {
-        Path sp1 = shortestPath(s, arc.baseNode);
-        Path sp2 = shortestPath(arc.adjNode, d);
-
-        double value = 0;
-
-        List<EdgeIteratorState> edges = sp1.calcEdges();
-        edges.addAll(sp2.calcEdges());
-
-        for(EdgeIteratorState edge : edges) {
-            value += scoreWeighting.calcWeight(edge, false, edge.getBaseNode());
-        }
+    private double getPathScore(@NotNull BidirectionalSearch search, int s, int d, @NotNull Arc arc) {
+        search.calc(s, arc.baseNode);
+        double score = search.getScore();
+        search.calc(arc.adjNode, d);
+        return score + search.getScore() + arc.score;
+    }
 
-        value += arc.score;
-        value /= (sp1.getDistance() + arc.cost + sp2.getDistance());
+    /**
+     * Computes the Quality Ratio for the specified Arc.
+     *
+     * @param arc       Arc.
+     * @param pathScore Score of the path s --> arc --> d.
+     * @param table     Path costs of the CAS the arc belongs to.
+     * @return Quality Ratio.
+     */
+    private double calcQualityRatio(@NotNull Arc arc, double pathScore, @NotNull ArcCostTable table) {
+        double value = pathScore / table.getPathCost(arc);
 
         if(Double.isNaN(value)) {
             value = 0;
         }
 
-        arc.qualityRatio = value;
+        return value;
     }
 
     /**
      * Returns a list of Arcs from the specified CAS whose Quality Ratio scores are above the average.
      *
-     * @param cas CAS
+     * @param cas    CAS as arc IDs.
+     * @param ratios Quality Ratios of the CAS.
      * @return Arc list.
      */
-    private List<Arc> getCandidateArcsByQR(List<Arc> cas) {
-        List<Arc> arcs = new ArrayList<>();
+    private List<Arc> getCandidateArcsByQR(IntArrayList cas, DoubleArrayList ratios) {
+        List<Arc> result = new ArrayList<>();
         double avgQR = 0;
-        for(Arc ca : cas) {
-            avgQR += ca.qualityRatio;
+        for(int i = 0; i < cas.size(); i++) {
+            avgQR += ratios.get(i);
         }
         avgQR /= cas.size();
 
-        for(Arc ca : cas) {
-            if(ca.qualityRatio >= avgQR) {
-                arcs.add(ca);
+        for(int i = 0; i < cas.size(); i++) {
+            if(ratios.get(i) >= avgQR) {
+                result.add(arcs.get(cas.get(i)));
             }
         }
 
-        return arcs;
+        return result;
     }
 
     /**
@@ -409,42 +446,81 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
      * @param d         End Node Id.
      * @param dist      Allowable budget.
      * @param minProfit Minimum required score.
-     * @param cas       CAS
+     * @param cas       CAS as arc IDs.
+     * @param ratios    Quality Ratios of the CAS.
      * @return Route. May be empty!
      */
-    private Route generatePath(int s, int d, double dist, double minProfit, List<Arc> cas) {
+    private Route generatePath(int s, int d, double dist, double minProfit, IntArrayList cas,
+                               DoubleArrayList ratios) {
         logger.debug("Generating path! dist: " + dist + " minProfit: " + minProfit + " cas size: " + cas.size());
-        Route route = Route.newRoute(this, graph, weighting, scoreWeighting, s, d, dist);
+        Route route = Route.newRoute(sp, arcs, graph, weighting, scoreWeighting, s, d, dist);
 
-        List<Arc> arcs = getCandidateArcsByQR(cas);
-        while(!arcs.isEmpty() && route.getCost() < dist) {
-            int randomIndex = random.nextInt(arcs.size());
-            Arc e = arcs.remove(randomIndex);
+        List<Arc> candidates = getCandidateArcsByQR(cas, ratios);
+        while(!candidates.isEmpty() && route.getCost() < dist && !deadline.isExpired()) {
+            int randomIndex = random.nextInt(candidates.size());
+            Arc e = candidates.remove(randomIndex);
             route.insertArcAtMinPathSegment(e);
         }
 
         if(route.getScore() > minProfit) {
             return route;
         } else {
-            return Route.newRoute(this, graph, weighting, scoreWeighting, s, d, dist);
+            return Route.newRoute(sp, arcs, graph, weighting, scoreWeighting, s, d, dist);
         }
 
     }
 
     @Override
     public double getPathCost(int s, int d, @NotNull Arc arc) {
-        return shortestPath(s, arc.baseNode).getDistance() + arc.cost +
-                shortestPath(arc.adjNode, d).getDistance();
+        return getPathCost(s, d, arc, Double.MAX_VALUE);
+    }
+
+    @Override
+    public double getPathCost(int s, int d, @NotNull Arc arc, double budget) {
+        double toArc = shortestDistance(s, arc.baseNode, budget - arc.cost);
+        if(toArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+
+        double fromArc = shortestDistance(arc.adjNode, d, budget - arc.cost - toArc);
+        if(fromArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        return toArc + arc.cost + fromArc;
+    }
+
+    @Override
+    public ArcCostTable getArcCostTable(int s, int d, @NotNull List<Arc> arcs, double budget) {
+        IntArrayList baseNodes = new IntArrayList(arcs.size());
+        IntArrayList adjNodes = new IntArrayList(arcs.size());
+        for(Arc arc : arcs) {
+            baseNodes.add(arc.baseNode);
+            adjNodes.add(arc.adjNode);
+        }
+
+        return new ArcCostTable(oneToMany.calcFrom(s, baseNodes, budget), oneToMany.calcTo(adjNodes, d, budget));
     }
 
     @Override
-    public Path shortestPath(int s, int d) {
-        RoutingAlgorithm search =
-                new DijkstraBidirectionCH(CHGraph,
-                        weighting, TraversalMode.NODE_BASED)
-                        .setEdgeFilter(levelEdgeFilter);
+    public IlsPath shortestPath(int s, int d) {
+        final IlsPath path = new IlsPath(graph, weighting, scoreWeighting);
+        boolean found = search.calc(s, d);
+        search.visitPath(path::processEdge);
+
+        return (IlsPath) path.setEndNode(d)
+                .setFromNode(s)
+                .setFound(found);
+    }
 
-        return search.calcPath(s, d);
+    @Override
+    public double shortestDistance(int s, int d) {
+        return shortestDistance(s, d, Double.MAX_VALUE);
+    }
+
+    @Override
+    public double shortestDistance(int s, int d, double maxDistance) {
+        search.calc(s, d, null, maxDistance);
+        return search.getDistance();
     }
 
     // Unused
@@ -467,6 +543,6 @@ public class LSIteratedLocalSearch extends AbstractRoutingAlgorithm implements S
     // Used for tracking progress of iterations
     @Override
     public Iteration[] getIterationInfo() {
-        return iterations;
+        return Arrays.copyOf(iterations, iterationCount);
     }
 }
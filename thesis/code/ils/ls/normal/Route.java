@@ -3,6 +3,8 @@ package com.graphhopper.routing.ils.ls.normal;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ils.IlsPath;
 import com.graphhopper.routing.ils.ls.Arc;
+import com.graphhopper.routing.ils.ls.ArcPositions;
+import com.graphhopper.routing.ils.ls.ArcState;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
@@ -26,17 +28,23 @@ class Route implements Iterable<Arc> {
     private Weighting timeWeighting;
     private Weighting scoreWeighting;
     private ShortestPathCalculator sp;
+    private ArcState arcState; // CAS and Improve Potential of the arcs
     private final int s, d; // Start & End Node IDs
     private final double MAX_COST;
 
     private List<Arc> arcs; // List of "attractive arcs" in the Route
-    private List<Path> blankSegments; // List of shortest paths connecting non-contiguous attractive arcs.
+    private ArcPositions positions; // Index of the arcs by ID
+    private List<IlsPath> blankSegments; // List of shortest paths connecting non-contiguous attractive arcs.
     private double cost, score; // Current
+    private double pathScore; // Score of all edges, including the blank path segments
+    private double improvePotentialSum; // Stored Improve Potential of all arcs, counted once per position
 
-    private Route(ShortestPathCalculator shortestPathCalculator, Graph graph, Weighting timeWeighting,
-                  Weighting scoreWeighting, int s, int d, double maxCost) {
+    private Route(ShortestPathCalculator shortestPathCalculator, ArcState arcState, Graph graph,
+                  Weighting timeWeighting, Weighting scoreWeighting, int s, int d, double maxCost) {
         sp = shortestPathCalculator;
+        this.arcState = arcState;
         arcs = new ArrayList<>();
+        positions = new ArcPositions(arcs);
         blankSegments = new ArrayList<>();
         cost = 0;
         score = 0;
@@ -52,6 +60,7 @@ class Route implements Iterable<Arc> {
      * Static factory method for creating a new Route instance.
      *
      * @param sp             Interface which can calculate Shortest Paths.
+     * @param arcState       State of the arcs of the current query.
      * @param graph          Graph.
      * @param weighting      Weighting used to calculate distance of added arcs.
      * @param scoreWeighting Weighting used to calculate score of added arcs.
@@ -59,10 +68,10 @@ class Route implements Iterable<Arc> {
      * @param d              End Node ID.
      * @return New Route Instance.
      */
-    static Route newRoute(@NotNull ShortestPathCalculator sp, @NotNull Graph graph,
+    static Route newRoute(@NotNull ShortestPathCalculator sp, @NotNull ArcState arcState, @NotNull Graph graph,
                           @NotNull Weighting weighting, @NotNull Weighting scoreWeighting,
                           int s, int d, double maxCost) {
-        return new Route(sp, graph, weighting, scoreWeighting, s, d, maxCost);
+        return new Route(sp, arcState, graph, weighting, scoreWeighting, s, d, maxCost);
     }
 
     /**
@@ -80,8 +89,11 @@ class Route implements Iterable<Arc> {
 
         updatePathSegments(index, arc, arc);
         arcs.add(index, arc);
+        positions.invalidate();
+        improvePotentialSum += arcState.getImprovePotential(arc);
         cost += arc.cost;
         score += arc.score;
+        pathScore += arc.score;
     }
 
     /**
@@ -91,7 +103,7 @@ class Route implements Iterable<Arc> {
      * @return Index of removed Arc. Returns -1 if Arc was not in the current Route.
      */
     int removeArc(@NotNull Arc a) {
-        int index = arcs.indexOf(a);
+        int index = positions.indexOf(a);
 
         // Short circuit if Arc is not present in Route
         if(index == -1) {
@@ -99,10 +111,12 @@ class Route implements Iterable<Arc> {
         }
 
         // Remove two path segments surrounding Arc
-        Path segment1 = blankSegments.remove(index);
-        Path segment2 = blankSegments.remove(index);
+        IlsPath segment1 = blankSegments.remove(index);
+        IlsPath segment2 = blankSegments.remove(index);
         cost -= segment1.getDistance();
+        pathScore -= segment1.getScore();
         cost -= segment2.getDistance();
+        pathScore -= segment2.getScore();
 
         // If we have more than 1 arc we need to add a new path segment to join the Route
         int length = length();
@@ -122,14 +136,18 @@ class Route implements Iterable<Arc> {
             }
 
             // Calculate and add new path segment
-            Path segment = sp.shortestPath(start, end);
+            IlsPath segment = sp.shortestPath(start, end);
             blankSegments.add(index, segment);
             cost += segment.getDistance();
+            pathScore += segment.getScore();
         }
 
         arcs.remove(index);
+        positions.invalidate();
+        improvePotentialSum -= arcState.getImprovePotential(a);
         cost -= a.cost;
         score -= a.score;
+        pathScore -= a.score;
 
         return index;
     }
@@ -156,14 +174,21 @@ class Route implements Iterable<Arc> {
 
             // We need to remove the inserted routes starting and ending path segments
             // We recalculate the new path segments below
-            Path head = route.blankSegments.remove(0);
-            Path tail = route.blankSegments.remove(route.blankSegments.size() - 1);
+            IlsPath head = route.blankSegments.remove(0);
+            IlsPath tail = route.blankSegments.remove(route.blankSegments.size() - 1);
             route.cost -= head.getDistance();
+            route.pathScore -= head.getScore();
             route.cost -= tail.getDistance();
+            route.pathScore -= tail.getScore();
 
             score += route.score;
             cost += route.cost;
+            pathScore += route.pathScore;
             arcs.addAll(index, route.arcs);
+            positions.invalidate();
+            for(Arc arc : route.arcs) {
+                improvePotentialSum += arcState.getImprovePotential(arc);
+            }
             blankSegments.addAll(index + 1, route.blankSegments);
         }
     }
@@ -190,16 +215,19 @@ class Route implements Iterable<Arc> {
             end = arcs.get(index).baseNode;
         }
 
-        Path segment1 = sp.shortestPath(start, left.baseNode);
+        IlsPath segment1 = sp.shortestPath(start, left.baseNode);
         cost += segment1.getDistance();
+        pathScore += segment1.getScore();
 
-        Path segment2 = sp.shortestPath(right.adjNode, end);
+        IlsPath segment2 = sp.shortestPath(right.adjNode, end);
         cost += segment2.getDistance();
+        pathScore += segment2.getScore();
 
         // If non-empty, remove the previous blank path segment before inserting the two new ones
         if(length > 0) {
-            Path removed = blankSegments.remove(index);
+            IlsPath removed = blankSegments.remove(index);
             cost -= removed.getDistance();
+            pathScore -= removed.getScore();
         }
 
         blankSegments.add(index, segment2);
@@ -225,6 +253,16 @@ class Route implements Iterable<Arc> {
         return score;
     }
 
+    /**
+     * Returns the score of all edges of the route, including the blank path segments. This is the score of the
+     * Path returned by {@link Route#getPath()} without building it.
+     *
+     * @return Sum of all edge scores in the Route.
+     */
+    double getPathScore() {
+        return pathScore;
+    }
+
     /**
      * Returns the leftover budget after subtracting the current Route's cost.
      *
@@ -243,9 +281,11 @@ class Route implements Iterable<Arc> {
         IlsPath path = new IlsPath(graph, timeWeighting, scoreWeighting);
 
         // If we have a fake arc return no path
-        if(contains(new Arc(Arc.FAKE_ARC_ID, s, d, 0, 0, null))) {
-            path.setFound(false);
-            return path;
+        for(Arc arc : arcs) {
+            if(arc.isFake()) {
+                path.setFound(false);
+                return path;
+            }
         }
 
         for(int i = 0; i < blankSegments.size(); i++) {
@@ -283,45 +323,57 @@ class Route implements Iterable<Arc> {
     }
 
     /**
-     * Returns a list of Arcs from the Route whose Improve Potential scores are above the average.
+     * Returns a list of Arcs from the Route whose Improve Potential scores are above the average. Only arcs whose
+     * neighbours or CAS changed since their last call are computed again, the average comes from a maintained sum.
      *
      * @return Arc list.
      */
     List<Arc> getCandidateArcsByIP() {
         List<Arc> result = new ArrayList<>();
-        double avgIP = 0;
         for(Arc ca : arcs) {
             calcImprovePotential(ca);
-            avgIP += ca.improvePotential;
         }
-        avgIP /= arcs.size();
+        double avgIP = improvePotentialSum / arcs.size();
 
         for(Arc ca : arcs) {
-            if(ca.improvePotential >= avgIP) {
+            if(arcState.getImprovePotential(ca) >= avgIP) {
                 result.add(ca);
             }
         }
 
+        // Rounding of the maintained sum can put the average just above potentials which are all equal
+        if(result.isEmpty()) {
+            result.addAll(arcs);
+        }
+
         return result;
     }
 
     /**
-     * Calculates the Improve Potential score of a given arc.
+     * Calculates the Improve Potential score of a given arc unless the stored one is still current.
      *
      * @param arc Arc to calculate
      */
     private void calcImprovePotential(@NotNull Arc arc) {
         int v1 = getPrev(arc);
         int v2 = getNext(arc);
+        if(arcState.isImprovePotentialCurrent(arc, v1, v2)) {
+            return;
+        }
 
         double score = 0;
         double maxDist = 0;
 
-        double dist = sp.getPathCost(v1, v2, arc);
+        List<Arc> cas = arcState.getArcs(arcState.getCas(arc));
+        List<Arc> arcs = new ArrayList<>(cas);
+        arcs.add(arc);
+        ArcCostTable table = sp.getArcCostTable(v1, v2, arcs, Double.MAX_VALUE);
 
-        for(Arc e : arc.getCas()) {
+        double dist = table.getPathCost(arc);
+
+        for(Arc e : cas) {
             score += e.score - arc.score;
-            maxDist = Math.max(maxDist, sp.getPathCost(v1, v2, e));
+            maxDist = Math.max(maxDist, table.getPathCost(e));
         }
 
         double result = score / (maxDist - dist);
@@ -331,7 +383,8 @@ class Route implements Iterable<Arc> {
             result = 0;
         }
 
-        arc.improvePotential = result;
+        improvePotentialSum += (result - arcState.getImprovePotential(arc)) * positions.count(arc);
+        arcState.setImprovePotential(arc, result, v1, v2);
     }
 
     /**
@@ -341,11 +394,11 @@ class Route implements Iterable<Arc> {
      * @return Node ID
      */
     int getPrev(@NotNull Arc a) {
-        if(!contains(a)) {
+        int index = positions.indexOf(a);
+        if(index == -1) {
             throw new IllegalArgumentException("Arc is not in route!");
         }
 
-        int index = arcs.indexOf(a);
         return (index - 1 >= 0) ? arcs.get(index - 1).adjNode : s;
     }
 
@@ -356,11 +409,11 @@ class Route implements Iterable<Arc> {
      * @return Node ID.
      */
     int getNext(@NotNull Arc a) {
-        if(!contains(a)) {
+        int index = positions.indexOf(a);
+        if(index == -1) {
             throw new IllegalArgumentException("Arc is not in route!");
         }
 
-        int index = arcs.indexOf(a);
         return (index + 1 <= length() - 1) ? arcs.get(index + 1).baseNode : d;
     }
 
@@ -371,7 +424,7 @@ class Route implements Iterable<Arc> {
      * @return True if arc is in Route, else false.
      */
     boolean contains(@NotNull Arc a) {
-        return arcs.contains(a);
+        return positions.contains(a);
     }
 
     /**
@@ -397,12 +450,12 @@ class Route implements Iterable<Arc> {
             int start = pathIndex == 0 ? s : arcs.get(pathIndex - 1).adjNode;
             int end = pathIndex == length() ? d : arcs.get(pathIndex).baseNode;
 
-            if(sp.getPathCost(start, end, arc) <=
-                    getRemainingCost() + minPathValue) {
+            double budget = getRemainingCost() + minPathValue;
+            if(sp.getPathCost(start, end, arc, budget) <= budget) {
                 addArc(pathIndex, arc);
             }
 
-        } else if(sp.getPathCost(s, d, arc) <= getRemainingCost()) {
+        } else if(sp.getPathCost(s, d, arc, getRemainingCost()) <= getRemainingCost()) {
             addArc(0, arc);
         }
     }
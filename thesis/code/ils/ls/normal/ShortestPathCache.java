@@ -0,0 +1,155 @@
+package com.graphhopper.routing.ils.ls.normal;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ils.IlsPath;
+import com.graphhopper.routing.ils.ls.Arc;
+import com.sun.istack.internal.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ShortestPathCalculator} which memoizes the results of another calculator for the duration of a single
+ * request. Full {@link Path} objects and plain distances are kept in two separate LRU maps keyed by (s, d) so that
+ * the many distance lookups made while computing Candidate Arc Sets don't evict the paths used as blank segments.
+ */
+final class ShortestPathCache implements ShortestPathCalculator {
+
+    private final ShortestPathCalculator calculator;
+    private final LruMap<IlsPath> paths;
+    private final LruMap<Double> distances;
+
+    private long pathHits, pathMisses;
+    private long distanceHits, distanceMisses;
+
+    /**
+     * @param calculator   Calculator to delegate cache misses to.
+     * @param maxPaths     Maximum number of paths to keep.
+     * @param maxDistances Maximum number of distances to keep.
+     */
+    ShortestPathCache(@NotNull ShortestPathCalculator calculator, int maxPaths, int maxDistances) {
+        this.calculator = calculator;
+        paths = new LruMap<>(maxPaths);
+        distances = new LruMap<>(maxDistances);
+    }
+
+    @Override
+    public IlsPath shortestPath(int s, int d) {
+        long key = key(s, d);
+        IlsPath path = paths.get(key);
+        if(path != null) {
+            pathHits++;
+            return path;
+        }
+
+        pathMisses++;
+        path = calculator.shortestPath(s, d);
+        paths.put(key, path);
+        distances.put(key, path.getDistance());
+        return path;
+    }
+
+    @Override
+    public double getPathCost(int s, int d, @NotNull Arc arc) {
+        return getPathCost(s, d, arc, Double.MAX_VALUE);
+    }
+
+    @Override
+    public double getPathCost(int s, int d, @NotNull Arc arc, double budget) {
+        double toArc = shortestDistance(s, arc.baseNode, budget - arc.cost);
+        if(toArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+
+        double fromArc = shortestDistance(arc.adjNode, d, budget - arc.cost - toArc);
+        if(fromArc == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        return toArc + arc.cost + fromArc;
+    }
+
+    @Override
+    public ArcCostTable getArcCostTable(int s, int d, @NotNull List<Arc> arcs, double budget) {
+        // Tables cover a whole CAS and are rarely requested twice for the same arcs, so they are not memoized
+        return calculator.getArcCostTable(s, d, arcs, budget);
+    }
+
+    @Override
+    public double shortestDistance(int s, int d) {
+        return shortestDistance(s, d, Double.MAX_VALUE);
+    }
+
+    /**
+     * Returns the shortest path distance between two nodes, only keeping the distance around on a cache miss. A
+     * bounded search which doesn't find a path says nothing about the exact distance, so that result isn't kept. A
+     * distance found by a bounded search is exact since bounded searches only run with the shortest weighting.
+     */
+    @Override
+    public double shortestDistance(int s, int d, double maxDistance) {
+        long key = key(s, d);
+        Double distance = distances.get(key);
+        if(distance == null) {
+            IlsPath path = paths.get(key);
+            if(path != null) {
+                distance = path.getDistance();
+                distances.put(key, distance);
+            }
+        }
+
+        if(distance != null) {
+            distanceHits++;
+            return distance <= maxDistance ? distance : Double.MAX_VALUE;
+        }
+
+        distanceMisses++;
+        double result = calculator.shortestDistance(s, d, maxDistance);
+        if(result != Double.MAX_VALUE || maxDistance == Double.MAX_VALUE) {
+            distances.put(key, result);
+        }
+        return result;
+    }
+
+    private static long key(int s, int d) {
+        return ((long) s << 32) | (d & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the fraction of lookups (paths and distances) which were answered from the cache.
+     *
+     * @return Hit rate in [0, 1].
+     */
+    double getHitRate() {
+        long hits = pathHits + distanceHits;
+        long total = hits + pathMisses + distanceMisses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathCache{" +
+                "pathHits=" + pathHits +
+                ", pathMisses=" + pathMisses +
+                ", distanceHits=" + distanceHits +
+                ", distanceMisses=" + distanceMisses +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                '}';
+    }
+
+    /**
+     * Access ordered map which evicts its least recently used entry once it grows past its capacity.
+     */
+    private static final class LruMap<V> extends LinkedHashMap<Long, V> {
+        private final int capacity;
+
+        LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
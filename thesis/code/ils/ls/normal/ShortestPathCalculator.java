@@ -1,15 +1,38 @@
 package com.graphhopper.routing.ils.ls.normal;
 
-import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ils.IlsPath;
 import com.graphhopper.routing.ils.ls.Arc;
 import com.sun.istack.internal.NotNull;
 
+import java.util.List;
+
 public interface ShortestPathCalculator {
 
     /**
-     * Returns the shortest distance in meters between two nodes of the graph.
+     * Returns the shortest path between two nodes of the graph. The path knows its score, so the score of a route
+     * can be kept up to date without walking its edges again.
+     */
+    IlsPath shortestPath(int s, int d);
+
+    /**
+     * Returns the shortest distance in meters between two nodes of the graph without building a {@link com.graphhopper.routing.Path}.
+     *
+     * @param s Start node ID.
+     * @param d End node ID.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if there is no path.
+     */
+    double shortestDistance(int s, int d);
+
+    /**
+     * Returns the shortest distance in meters between two nodes of the graph if it doesn't exceed the specified
+     * maximum. The search stops as soon as no path within the maximum can exist.
+     *
+     * @param s           Start node ID.
+     * @param d           End node ID.
+     * @param maxDistance Maximum distance in meters.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if there is no path within the maximum.
      */
-    Path shortestPath(int s, int d);
+    double shortestDistance(int s, int d, double maxDistance);
 
     /**
      * Returns the total distance in meters of the path s --> arc --> d where "-->" is shortest path.
@@ -21,4 +44,29 @@ public interface ShortestPathCalculator {
      */
     double getPathCost(int s, int d, @NotNull Arc arc);
 
+    /**
+     * Returns the total distance in meters of the path s --> arc --> d if it fits into the specified budget. Both
+     * shortest path legs share the budget, so the second leg only gets what is left over by the first one.
+     *
+     * @param s      Start node ID.
+     * @param d      End node ID.
+     * @param arc    Arc.
+     * @param budget Budget in meters.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the path goes over the budget.
+     */
+    double getPathCost(int s, int d, @NotNull Arc arc, double budget);
+
+    /**
+     * Returns a table which holds the cost of the path s --> arc --> d for all of the specified arcs. This is much
+     * cheaper than calling {@link #getPathCost(int, int, Arc)} for every arc.
+     *
+     * @param s      Start node ID.
+     * @param d      End node ID.
+     * @param arcs   Arcs to include in the table.
+     * @param budget Budget in meters. Shortest path legs longer than this are treated as unreachable. Use
+     *               {@link Double#MAX_VALUE} for exact costs of all arcs.
+     * @return Table of path costs.
+     */
+    ArcCostTable getArcCostTable(int s, int d, @NotNull List<Arc> arcs, double budget);
+
 }
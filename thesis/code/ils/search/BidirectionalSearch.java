@@ -0,0 +1,352 @@
+package com.graphhopper.routing.ils.search;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Bidirectional Dijkstra search which can be run many times. All labels live in pooled {@link SearchWorkspace}s so
+ * repeated queries don't allocate heaps, maps or {@link com.graphhopper.routing.Path} objects.
+ * <p>
+ * When created with a level edge filter the search runs on a Contraction Hierarchy and only relaxes upward edges.
+ * Otherwise it is a plain bidirectional Dijkstra on the specified graph.
+ * <p>
+ * With a score weighting every label also carries the summed score of its tree path, so a query returns the distance
+ * and the score of the path together. On a Contraction Hierarchy this needs the precomputed scores of the shortcuts,
+ * without them the path is unpacked when its score is asked for.
+ */
+public class BidirectionalSearch {
+
+    private final Graph graph;
+    private final Weighting weighting;
+    private final Weighting scoreWeighting; // Null if scores aren't tracked
+    private final ShortcutScoreIndex shortcutScores; // Null if not searching a Contraction Hierarchy
+    private final boolean scoreLabels; // Whether the labels hold the scores of their paths
+    private final EdgeFilter levelEdgeFilter; // Null if not searching a Contraction Hierarchy
+    private final EdgeExplorer outExplorer, inExplorer;
+    private final ShortcutUnpacker unpacker;
+    private final IntArrayList pathBuffer = new IntArrayList();
+
+    private SearchWorkspace from, to;
+    private EdgeFilter additionalFilter;
+    private double maxDistance;
+    private int meetingNode;
+    private double bestWeight, bestDistance, bestScore;
+    private double unpackedScore; // Score summed while unpacking a path whose labels hold no scores
+
+    /**
+     * @param graph           Graph to search.
+     * @param weighting       Weighting to minimize.
+     * @param encoder         Flag encoder used to check edge directions.
+     * @param levelEdgeFilter Edge filter of the Contraction Hierarchy or null for a graph without shortcuts.
+     */
+    public BidirectionalSearch(@NotNull Graph graph, @NotNull Weighting weighting, @NotNull FlagEncoder encoder,
+                               @Nullable EdgeFilter levelEdgeFilter) {
+        this(graph, weighting, encoder, levelEdgeFilter, null, null);
+    }
+
+    /**
+     * Creates a search which also returns the score of the paths it finds.
+     *
+     * @param graph           Graph to search.
+     * @param weighting       Weighting to minimize.
+     * @param encoder         Flag encoder used to check edge directions.
+     * @param levelEdgeFilter Edge filter of the Contraction Hierarchy or null for a graph without shortcuts.
+     * @param scoreWeighting  Weighting used to score edges. May be null.
+     * @param shortcutScores  Scores of the shortcuts under the score weighting. May be null.
+     */
+    public BidirectionalSearch(@NotNull Graph graph, @NotNull Weighting weighting, @NotNull FlagEncoder encoder,
+                               @Nullable EdgeFilter levelEdgeFilter, @Nullable Weighting scoreWeighting,
+                               @Nullable ShortcutScoreIndex shortcutScores) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.levelEdgeFilter = levelEdgeFilter;
+        this.scoreWeighting = scoreWeighting;
+        this.shortcutScores = levelEdgeFilter != null ? shortcutScores : null;
+        scoreLabels = scoreWeighting != null && (levelEdgeFilter == null || shortcutScores != null);
+        outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        unpacker = new ShortcutUnpacker(graph, levelEdgeFilter != null);
+        from = SearchWorkspace.acquire(graph.getNodes());
+        to = SearchWorkspace.acquire(graph.getNodes());
+    }
+
+    /**
+     * Searches the shortest path between two nodes.
+     *
+     * @param s Start Node ID.
+     * @param d End Node ID.
+     * @return True if a path was found, else false.
+     */
+    public boolean calc(int s, int d) {
+        return calc(s, d, null);
+    }
+
+    /**
+     * Searches the shortest path between two nodes only using edges accepted by the specified filter.
+     *
+     * @param s      Start Node ID.
+     * @param d      End Node ID.
+     * @param filter Additional edge filter. May be null.
+     * @return True if a path was found, else false.
+     */
+    public boolean calc(int s, int d, @Nullable EdgeFilter filter) {
+        return calc(s, d, filter, Double.MAX_VALUE);
+    }
+
+    /**
+     * Searches the shortest path between two nodes whose distance doesn't exceed the specified maximum. Labels farther
+     * away than the maximum are never expanded so a search for an infeasible path stops early. A maximum requires the
+     * shortest distance weighting, see {@link #checkDistanceBound(Weighting, double)}.
+     *
+     * @param s           Start Node ID.
+     * @param d           End Node ID.
+     * @param filter      Additional edge filter. May be null.
+     * @param maxDistance Maximum distance of the path in meters.
+     * @return True if a path within the maximum distance was found, else false.
+     */
+    public boolean calc(int s, int d, @Nullable EdgeFilter filter, double maxDistance) {
+        checkDistanceBound(weighting, maxDistance);
+        additionalFilter = filter;
+        this.maxDistance = maxDistance;
+        from.reset();
+        to.reset();
+        bestWeight = Double.POSITIVE_INFINITY;
+        bestDistance = Double.POSITIVE_INFINITY;
+        bestScore = 0;
+        meetingNode = -1;
+
+        from.update(s, 0, 0, -1, EdgeIterator.NO_EDGE);
+        from.heap.push(s, 0);
+        to.update(d, 0, 0, -1, EdgeIterator.NO_EDGE);
+        to.heap.push(d, 0);
+        if(s == d) {
+            updateBest(s, 0, 0, 0);
+            return true;
+        }
+        if(maxDistance < 0) {
+            return false;
+        }
+
+        while(true) {
+            double fromKey = from.heap.isEmpty() ? Double.POSITIVE_INFINITY : from.heap.peekKey();
+            double toKey = to.heap.isEmpty() ? Double.POSITIVE_INFINITY : to.heap.peekKey();
+
+            // An upward search can't stop once the sum of both keys exceeds the best path, only when each side does
+            if(levelEdgeFilter == null ? fromKey + toKey >= bestWeight : Math.min(fromKey, toKey) >= bestWeight) {
+                break;
+            }
+
+            if(fromKey <= toKey) {
+                step(from, to, false);
+            } else {
+                step(to, from, true);
+            }
+        }
+
+        // Both halves can be within the maximum while their sum is not
+        if(bestDistance > maxDistance) {
+            meetingNode = -1;
+        }
+
+        return isFound();
+    }
+
+    /**
+     * Rejects a distance bound for a search which doesn't minimize distance. Labels are settled by weight, so dropping
+     * a label for its distance can hide a path which weighs more but is short enough, and the search would report a
+     * wrong or no path within the bound. With the shortest distance weighting weight and distance are the same.
+     *
+     * @param weighting   Weighting minimized by the search.
+     * @param maxDistance Maximum distance in meters, {@link Double#MAX_VALUE} if unbounded.
+     * @throws IllegalArgumentException If the search is bounded and the weighting doesn't minimize distance.
+     */
+    static void checkDistanceBound(@NotNull Weighting weighting, double maxDistance) {
+        if(maxDistance != Double.MAX_VALUE && !(weighting instanceof ShortestWeighting)) {
+            throw new IllegalArgumentException("Distance bounded searches need the shortest weighting, not " +
+                    weighting.getName());
+        }
+    }
+
+    private void step(SearchWorkspace current, SearchWorkspace other, boolean reverse) {
+        double weight = current.heap.peekKey();
+        int node = current.heap.poll();
+        if(weight > current.getWeight(node)) {
+            return; // Stale heap entry
+        }
+
+        double distance = current.getDistance(node);
+        double score = current.getScore(node);
+        int parentEdge = current.getParentEdge(node);
+        EdgeIterator iter = (reverse ? inExplorer : outExplorer).setBaseNode(node);
+        while(iter.next()) {
+            if(!accept(iter, parentEdge)) {
+                continue;
+            }
+
+            double newWeight = weight + weighting.calcWeight(iter, reverse, parentEdge);
+            if(Double.isInfinite(newWeight)) {
+                continue;
+            }
+
+            double newDistance = distance + iter.getDistance();
+            if(newDistance > maxDistance) {
+                continue;
+            }
+
+            int adj = iter.getAdjNode();
+            if(!current.isVisited(adj) || newWeight < current.getWeight(adj)) {
+                double newScore = scoreLabels ? score + calcScore(iter, reverse, parentEdge) : 0;
+                current.update(adj, newWeight, newDistance, newScore, node, iter.getEdge());
+                current.heap.push(adj, newWeight);
+
+                if(other.isVisited(adj)) {
+                    updateBest(adj, newWeight + other.getWeight(adj), newDistance + other.getDistance(adj),
+                            newScore + other.getScore(adj));
+                }
+            }
+        }
+    }
+
+    private boolean accept(EdgeIterator iter, int parentEdge) {
+        if(iter.getEdge() == parentEdge) {
+            return false;
+        }
+        if(levelEdgeFilter != null && !levelEdgeFilter.accept(iter)) {
+            return false;
+        }
+        return additionalFilter == null || additionalFilter.accept(iter);
+    }
+
+    private double calcScore(EdgeIterator iter, boolean reverse, int parentEdge) {
+        int edge = iter.getEdge();
+        if(shortcutScores != null && shortcutScores.isShortcut(edge)) {
+            return shortcutScores.getScore(edge);
+        }
+        return scoreWeighting.calcWeight(iter, reverse, parentEdge);
+    }
+
+    private void updateBest(int node, double weight, double distance, double score) {
+        if(weight < bestWeight) {
+            bestWeight = weight;
+            bestDistance = distance;
+            bestScore = score;
+            meetingNode = node;
+        }
+    }
+
+    /**
+     * Returns whether the last search found a path.
+     */
+    public boolean isFound() {
+        return meetingNode >= 0;
+    }
+
+    /**
+     * Returns the distance of the path found by the last search.
+     *
+     * @return Distance in meters or {@link Double#MAX_VALUE} if no path was found.
+     */
+    public double getDistance() {
+        return isFound() ? bestDistance : Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns the score of the path found by the last search. The search must have been created with a score
+     * weighting. If its labels don't hold scores the path is unpacked and scored here.
+     *
+     * @return Summed score of all edges of the path or 0 if no path was found.
+     */
+    public double getScore() {
+        if(scoreWeighting == null) {
+            throw new IllegalStateException("Search was created without a score weighting!");
+        }
+        if(!isFound() || scoreLabels) {
+            return bestScore;
+        }
+
+        unpackedScore = 0;
+        visitPath((edgeId, adjNode, prevEdgeId) -> {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, adjNode);
+            unpackedScore += scoreWeighting.calcWeight(edge, false, prevEdgeId);
+        });
+        return unpackedScore;
+    }
+
+    /**
+     * Returns whether any edge of the path found by the last search matches the predicate. Shortcuts are passed as
+     * they are, without unpacking them, and the walk stops at the first match.
+     *
+     * @param predicate Predicate of an edge or shortcut ID.
+     * @return True if an edge matches, false if none does or no path was found.
+     */
+    public boolean anyEdgeMatches(@NotNull IntPredicate predicate) {
+        if(!isFound()) {
+            return false;
+        }
+        return anyEdgeMatches(from, predicate) || anyEdgeMatches(to, predicate);
+    }
+
+    private boolean anyEdgeMatches(SearchWorkspace workspace, IntPredicate predicate) {
+        for(int node = meetingNode; workspace.getParentEdge(node) != EdgeIterator.NO_EDGE;
+            node = workspace.getParentNode(node)) {
+            if(predicate.test(workspace.getParentEdge(node))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the original edges of the path found by the last search to the visitor in order from start to end.
+     * Shortcuts are unpacked. Callers which only need the distance of the path should skip this entirely.
+     *
+     * @param visitor Visitor.
+     */
+    public void visitPath(@NotNull EdgeVisitor visitor) {
+        if(!isFound()) {
+            return;
+        }
+
+        // Forward half is stored from the meeting node backwards so it needs to be reversed
+        pathBuffer.clear();
+        int node = meetingNode;
+        while(from.getParentEdge(node) != EdgeIterator.NO_EDGE) {
+            pathBuffer.add(from.getParentEdge(node), node);
+            node = from.getParentNode(node);
+        }
+
+        unpacker.start();
+        for(int i = pathBuffer.size() - 2; i >= 0; i -= 2) {
+            unpacker.visit(pathBuffer.get(i), pathBuffer.get(i + 1), visitor);
+        }
+
+        node = meetingNode;
+        while(to.getParentEdge(node) != EdgeIterator.NO_EDGE) {
+            int next = to.getParentNode(node);
+            unpacker.visit(to.getParentEdge(node), next, visitor);
+            node = next;
+        }
+    }
+
+    /**
+     * Returns the workspaces of this search to the pool of the current thread. The search can't be used afterwards.
+     */
+    public void release() {
+        from.release();
+        to.release();
+        from = null;
+        to = null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputed road distances between all pairs of nodes of a small graph. The matrix is stored row by row as floats in
+ * a memory mapped file of the graph directory, so loading it only maps the file and every lookup is a single read.
+ * <p>
+ * The file grows with the square of the number of nodes, so building is refused for graphs above a node limit.
+ */
+public final class DistanceMatrix {
+
+    private static final String NAME = "ils_distance_matrix";
+
+    private final DataAccess data;
+    private final int nodes;
+
+    private DistanceMatrix(DataAccess data, int nodes) {
+        this.data = data;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Maps a previously built matrix from the specified directory.
+     *
+     * @param dir Directory of the graph.
+     * @return Matrix or null if no matrix has been built yet.
+     */
+    @Nullable
+    public static DistanceMatrix load(@NotNull Directory dir) {
+        DataAccess data = dir.find(NAME, DAType.MMAP);
+        if(!data.loadExisting()) {
+            return null;
+        }
+        return new DistanceMatrix(data, data.getHeader(0));
+    }
+
+    /**
+     * Maps the matrix of the specified directory or builds and stores it if it doesn't exist yet or belongs to a graph
+     * with a different number of nodes.
+     *
+     * @param graph    Base graph without shortcuts.
+     * @param encoder  Flag encoder used to check edge directions.
+     * @param maxNodes Largest number of nodes to build a matrix for.
+     * @param dir      Directory of the graph.
+     * @return Matrix or null if the graph has more than the maximum number of nodes.
+     */
+    @Nullable
+    public static DistanceMatrix loadOrBuild(@NotNull Graph graph, @NotNull FlagEncoder encoder, int maxNodes,
+                                             @NotNull Directory dir) {
+        if(graph.getNodes() > maxNodes) {
+            return null;
+        }
+
+        DistanceMatrix matrix = load(dir);
+        if(matrix != null && matrix.nodes == graph.getNodes()) {
+            return matrix;
+        }
+        if(matrix != null) {
+            matrix.close();
+        }
+        return build(graph, encoder, maxNodes, dir);
+    }
+
+    /**
+     * Computes the distances from every node with one Dijkstra search per row, spread over all available processors,
+     * and flushes the matrix to the directory.
+     *
+     * @param graph    Base graph without shortcuts.
+     * @param encoder  Flag encoder used to check edge directions.
+     * @param maxNodes Largest number of nodes to build a matrix for.
+     * @param dir      Directory of the graph.
+     * @return Matrix.
+     * @throws IllegalArgumentException If the graph has more than the maximum number of nodes.
+     */
+    public static DistanceMatrix build(@NotNull final Graph graph, @NotNull FlagEncoder encoder, int maxNodes,
+                                       @NotNull Directory dir) {
+        final int nodes = graph.getNodes();
+        if(nodes > maxNodes) {
+            throw new IllegalArgumentException("Graph has " + nodes + " nodes, distance matrix is limited to " +
+                    maxNodes + "!");
+        }
+
+        final DataAccess data = dir.find(NAME, DAType.MMAP);
+        long bytes = Math.max((long) nodes * nodes * 4, 4);
+        data.create(bytes);
+        data.ensureCapacity(bytes);
+        data.setHeader(0, nodes);
+
+        final DefaultEdgeFilter filter = new DefaultEdgeFilter(encoder, false, true);
+        final AtomicInteger nextRow = new AtomicInteger();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    // Explorers aren't thread safe, so every worker needs its own
+                    EdgeExplorer explorer = graph.createEdgeExplorer(filter);
+                    double[] distances = new double[nodes];
+                    int row;
+                    while((row = nextRow.getAndIncrement()) < nodes) {
+                        OneToAllDijkstra.calc(explorer, row, distances);
+                        synchronized(data) {
+                            for(int col = 0; col < nodes; col++) {
+                                data.setInt(pointer(nodes, row, col), Float.floatToRawIntBits((float) distances[col]));
+                            }
+                        }
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch(InterruptedException | ExecutionException e) {
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Failed to build distance matrix!", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        data.flush();
+        return new DistanceMatrix(data, nodes);
+    }
+
+    private static long pointer(int nodes, int row, int col) {
+        return ((long) row * nodes + col) * 4;
+    }
+
+    /**
+     * Returns whether the matrix has an entry for the specified node. Virtual nodes of a query graph are not covered.
+     */
+    public boolean contains(int node) {
+        return node >= 0 && node < nodes;
+    }
+
+    /**
+     * Returns the shortest path distance between two nodes covered by the matrix.
+     *
+     * @param s Start Node ID.
+     * @param d End Node ID.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if there is no path.
+     */
+    public double getDistance(int s, int d) {
+        float distance = Float.intBitsToFloat(data.getInt(pointer(nodes, s, d)));
+        return Float.isInfinite(distance) ? Double.MAX_VALUE : distance;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public void close() {
+        data.close();
+    }
+}
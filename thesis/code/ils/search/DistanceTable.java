@@ -0,0 +1,30 @@
+package com.graphhopper.routing.ils.search;
+
+import com.carrotsearch.hppc.IntDoubleHashMap;
+
+/**
+ * Result of a one-to-many or many-to-one query computed by {@link OneToManyCH}. Holds the shortest path distance in
+ * meters between the fixed node of the query and each of the requested nodes.
+ */
+public final class DistanceTable {
+
+    private final IntDoubleHashMap distances;
+
+    DistanceTable(IntDoubleHashMap distances) {
+        this.distances = distances;
+    }
+
+    /**
+     * Returns the shortest path distance between the fixed node of the query and the specified node.
+     *
+     * @param node Node ID which was part of the query.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the node is unreachable.
+     */
+    public double getDistance(int node) {
+        return distances.getOrDefault(node, Double.MAX_VALUE);
+    }
+
+    public int size() {
+        return distances.size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.graphhopper.routing.ils.search;
+
+import java.util.Arrays;
+
+/**
+ * Dense set of edge IDs backed by a bit per edge. Membership tests are a single bit test, which makes it cheap to
+ * consult once per edge relaxation. The set grows on demand, so virtual edges of a query graph can be added as well.
+ */
+public final class EdgeBitSet {
+
+    private long[] words;
+
+    public EdgeBitSet() {
+        words = new long[0];
+    }
+
+    public boolean get(int edge) {
+        int word = edge >>> 6;
+        return word < words.length && (words[word] & (1L << edge)) != 0;
+    }
+
+    public void set(int edge) {
+        int word = edge >>> 6;
+        if(word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << edge;
+    }
+
+    public void clear(int edge) {
+        int word = edge >>> 6;
+        if(word < words.length) {
+            words[word] &= ~(1L << edge);
+        }
+    }
+
+    /**
+     * Returns whether any edge of the inclusive range [from, to] is in the set.
+     */
+    public boolean intersects(int from, int to) {
+        int first = from >>> 6;
+        int last = Math.min(to >>> 6, words.length - 1);
+        for(int word = first; word <= last; word++) {
+            long bits = words[word];
+            if(word == first) {
+                bits &= -1L << from;
+            }
+            if(word == to >>> 6) {
+                bits &= -1L >>> (63 - (to & 63));
+            }
+            if(bits != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
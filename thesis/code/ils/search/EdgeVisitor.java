@@ -0,0 +1,14 @@
+package com.graphhopper.routing.ils.search;
+
+/**
+ * Callback which receives the original (non-shortcut) edges of a shortest path in order from start to end.
+ */
+public interface EdgeVisitor {
+
+    /**
+     * @param edgeId     ID of the edge.
+     * @param adjNode    Node the edge is traversed towards.
+     * @param prevEdgeId ID of the previous edge on the path or {@link com.graphhopper.util.EdgeIterator#NO_EDGE}.
+     */
+    void next(int edgeId, int adjNode, int prevEdgeId);
+}
@@ -0,0 +1,191 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed road distances between a small set of landmark nodes and every node of the graph (ALT). By the triangle
+ * inequality d(u, v) >= d(L, v) - d(L, u) and d(u, v) >= d(u, L) - d(v, L) for every landmark L, which gives a lower
+ * bound of the distance between any two nodes without running a search.
+ * <p>
+ * Distances are stored as floats in a {@link DataAccess} of the graph directory, so the table is built once and loaded
+ * together with the rest of the graph afterwards. Landmarks are picked greedily as the nodes farthest away from all
+ * landmarks picked before.
+ */
+public final class LandmarkTable {
+
+    private static final String NAME = "ils_landmarks";
+    private static final float UNREACHABLE = Float.MAX_VALUE;
+
+    private final DataAccess data;
+    private final int nodes;
+    private final int landmarks;
+
+    private LandmarkTable(DataAccess data, int nodes, int landmarks) {
+        this.data = data;
+        this.nodes = nodes;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Loads a previously built table from the specified directory.
+     *
+     * @param dir Directory of the graph.
+     * @return Table or null if no table has been built yet.
+     */
+    @Nullable
+    public static LandmarkTable load(@NotNull Directory dir) {
+        DataAccess data = dir.find(NAME);
+        if(!data.loadExisting()) {
+            return null;
+        }
+        return new LandmarkTable(data, data.getHeader(0), data.getHeader(4));
+    }
+
+    /**
+     * Loads the table of the specified directory or builds and stores it if it doesn't exist yet or belongs to a graph
+     * with a different number of nodes.
+     *
+     * @param graph     Base graph without shortcuts.
+     * @param encoder   Flag encoder used to check edge directions.
+     * @param landmarks Number of landmarks to pick.
+     * @param dir       Directory of the graph.
+     * @return Table.
+     */
+    public static LandmarkTable loadOrBuild(@NotNull Graph graph, @NotNull FlagEncoder encoder, int landmarks,
+                                            @NotNull Directory dir) {
+        LandmarkTable table = load(dir);
+        if(table != null && table.nodes == graph.getNodes() && table.landmarks == landmarks) {
+            return table;
+        }
+        if(table != null) {
+            table.close();
+        }
+        return build(graph, encoder, landmarks, dir);
+    }
+
+    /**
+     * Picks the landmarks, computes the distances from and to each of them, and flushes the table to the directory.
+     *
+     * @param graph     Base graph without shortcuts.
+     * @param encoder   Flag encoder used to check edge directions.
+     * @param landmarks Number of landmarks to pick.
+     * @param dir       Directory of the graph.
+     * @return Table.
+     */
+    public static LandmarkTable build(@NotNull Graph graph, @NotNull FlagEncoder encoder, int landmarks,
+                                      @NotNull Directory dir) {
+        int nodes = graph.getNodes();
+        DataAccess data = dir.find(NAME);
+        long bytes = (long) nodes * landmarks * 8;
+        data.create(Math.max(bytes, 8));
+        data.ensureCapacity(Math.max(bytes, 8));
+        data.setHeader(0, nodes);
+        data.setHeader(4, landmarks);
+
+        LandmarkTable table = new LandmarkTable(data, nodes, landmarks);
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        EdgeExplorer inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        double[] forward = new double[nodes];
+        double[] backward = new double[nodes];
+        double[] minDistance = new double[nodes];
+        Arrays.fill(minDistance, Double.POSITIVE_INFINITY);
+
+        // Start from the node farthest away from an arbitrary node so the first landmark lies on the border
+        OneToAllDijkstra.calc(outExplorer, 0, forward);
+        int landmark = farthest(forward);
+        for(int l = 0; l < landmarks; l++) {
+            OneToAllDijkstra.calc(outExplorer, landmark, forward);
+            OneToAllDijkstra.calc(inExplorer, landmark, backward);
+            for(int node = 0; node < nodes; node++) {
+                table.set(node, l, forward[node], backward[node]);
+                minDistance[node] = Math.min(minDistance[node], forward[node]);
+            }
+            landmark = farthest(minDistance);
+        }
+
+        data.flush();
+        return table;
+    }
+
+    /**
+     * Returns the node with the largest finite distance.
+     */
+    private static int farthest(double[] distances) {
+        int result = 0;
+        for(int node = 1; node < distances.length; node++) {
+            if(!Double.isInfinite(distances[node]) &&
+                    (Double.isInfinite(distances[result]) || distances[node] > distances[result])) {
+                result = node;
+            }
+        }
+        return result;
+    }
+
+    private void set(int node, int landmark, double from, double to) {
+        long pointer = pointer(node, landmark);
+        data.setInt(pointer, Float.floatToRawIntBits(Double.isInfinite(from) ? UNREACHABLE : (float) from));
+        data.setInt(pointer + 4, Float.floatToRawIntBits(Double.isInfinite(to) ? UNREACHABLE : (float) to));
+    }
+
+    private float get(long pointer) {
+        return Float.intBitsToFloat(data.getInt(pointer));
+    }
+
+    private long pointer(int node, int landmark) {
+        return ((long) node * landmarks + landmark) * 8;
+    }
+
+    /**
+     * Returns a lower bound of the road distance from u to v. Nodes which are not part of the table, like the virtual
+     * nodes of a query graph, get a bound of zero.
+     *
+     * @param u Start Node ID.
+     * @param v End Node ID.
+     * @return Lower bound in meters or {@link Double#MAX_VALUE} if v can't be reached from u.
+     */
+    public double getLowerBound(int u, int v) {
+        if(u == v || u >= nodes || v >= nodes) {
+            return 0;
+        }
+
+        double bound = 0;
+        for(int l = 0; l < landmarks; l++) {
+            long uPointer = pointer(u, l);
+            long vPointer = pointer(v, l);
+
+            float fromU = get(uPointer);
+            float fromV = get(vPointer);
+            if(fromU != UNREACHABLE) {
+                if(fromV == UNREACHABLE) {
+                    return Double.MAX_VALUE; // Everything reachable from u is reachable from the landmark
+                }
+                bound = Math.max(bound, fromV - fromU);
+            }
+
+            float toU = get(uPointer + 4);
+            float toV = get(vPointer + 4);
+            if(toU != UNREACHABLE && toV != UNREACHABLE) {
+                bound = Math.max(bound, toU - toV);
+            }
+        }
+
+        return bound;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks;
+    }
+
+    public void close() {
+        data.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.graphhopper.routing.ils.search;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int elements keyed by double values. Decrease-key is not supported; instead an element is pushed
+ * again with its smaller key and the stale entry is skipped by the caller when it is polled. The backing arrays are
+ * kept between {@link #clear()} calls so a heap can be reused by many searches without allocating.
+ */
+final class MinHeap {
+
+    private int[] elements;
+    private double[] keys;
+    private int size;
+
+    MinHeap(int capacity) {
+        capacity = Math.max(capacity, 16);
+        elements = new int[capacity];
+        keys = new double[capacity];
+    }
+
+    void push(int element, double key) {
+        if(size == elements.length) {
+            int capacity = elements.length * 2;
+            elements = Arrays.copyOf(elements, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+
+        int i = size++;
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(keys[parent] <= key) {
+                break;
+            }
+            elements[i] = elements[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        elements[i] = element;
+        keys[i] = key;
+    }
+
+    int peekElement() {
+        return elements[0];
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes the element with the smallest key.
+     *
+     * @return Removed element.
+     */
+    int poll() {
+        int result = elements[0];
+        size--;
+        if(size > 0) {
+            int element = elements[size];
+            double key = keys[size];
+            int i = 0;
+            int half = size >>> 1;
+            while(i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if(right < size && keys[right] < keys[child]) {
+                    child = right;
+                }
+                if(key <= keys[child]) {
+                    break;
+                }
+                elements[i] = elements[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            elements[i] = element;
+            keys[i] = key;
+        }
+        return result;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
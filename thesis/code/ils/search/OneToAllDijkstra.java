@@ -0,0 +1,48 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Plain Dijkstra settling every node reachable from a root. Used to precompute per graph distance tables.
+ */
+final class OneToAllDijkstra {
+
+    private OneToAllDijkstra() {
+    }
+
+    /**
+     * Fills the road distances from the root to every node, following the edges accepted by the explorer. Unreachable
+     * nodes get {@link Double#POSITIVE_INFINITY}.
+     *
+     * @param explorer  Explorer of the graph. Use an explorer on incoming edges for distances to the root.
+     * @param root      Root Node ID.
+     * @param distances Array with one slot per node of the graph.
+     */
+    static void calc(EdgeExplorer explorer, int root, double[] distances) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        MinHeap heap = new MinHeap(1024);
+        distances[root] = 0;
+        heap.push(root, 0);
+
+        while(!heap.isEmpty()) {
+            double distance = heap.peekKey();
+            int node = heap.poll();
+            if(distance > distances[node]) {
+                continue; // Stale heap entry
+            }
+
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while(iter.next()) {
+                int adj = iter.getAdjNode();
+                double newDistance = distance + iter.getDistance();
+                if(newDistance < distances[adj]) {
+                    distances[adj] = newDistance;
+                    heap.push(adj, newDistance);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.graphhopper.routing.ils.search;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes one-to-many and many-to-one shortest path distances on a Contraction Hierarchy using restricted PHAST
+ * (RPHAST). A query is answered with a single upward search from the fixed node followed by one linear sweep over
+ * the part of the hierarchy from which the requested nodes can be reached by going downwards.
+ * <p>
+ * Upward edges are the ones accepted by the level edge filter of the hierarchy. The downward part of the sweep visits
+ * nodes in the post order of the selection DFS which guarantees every higher node is settled before the nodes below
+ * it.
+ */
+public class OneToManyCH {
+
+    private final Weighting weighting;
+    private final EdgeFilter levelEdgeFilter;
+    private final EdgeExplorer outExplorer, inExplorer;
+
+    // Selection DFS needs one explorer per depth since explorers can't be iterated re-entrantly
+    private final Graph graph;
+    private final EdgeFilter outFilter, inFilter;
+    private final List<EdgeExplorer> outExplorers = new ArrayList<>();
+    private final List<EdgeExplorer> inExplorers = new ArrayList<>();
+
+    /**
+     * @param chGraph         Graph containing shortcuts.
+     * @param weighting       Weighting the hierarchy was prepared with.
+     * @param encoder         Flag encoder used to check edge directions.
+     * @param levelEdgeFilter Edge filter which only accepts edges leading to a higher level.
+     */
+    public OneToManyCH(Graph chGraph, Weighting weighting, FlagEncoder encoder, EdgeFilter levelEdgeFilter) {
+        this.graph = chGraph;
+        this.weighting = weighting;
+        this.levelEdgeFilter = levelEdgeFilter;
+        outFilter = new DefaultEdgeFilter(encoder, false, true);
+        inFilter = new DefaultEdgeFilter(encoder, true, false);
+        outExplorer = chGraph.createEdgeExplorer(outFilter);
+        inExplorer = chGraph.createEdgeExplorer(inFilter);
+    }
+
+    /**
+     * Returns the shortest path distances from the source node to all target nodes.
+     *
+     * @param source  Start Node ID.
+     * @param targets End Node IDs. May contain duplicates.
+     * @return Distance table keyed by target.
+     */
+    public DistanceTable calcFrom(int source, IntArrayList targets) {
+        return calcFrom(source, targets, Double.MAX_VALUE);
+    }
+
+    /**
+     * Returns the shortest path distances from the source node to all target nodes within the maximum distance.
+     *
+     * @param source      Start Node ID.
+     * @param targets     End Node IDs. May contain duplicates.
+     * @param maxDistance Maximum distance in meters. Farther targets are treated as unreachable. Requires the
+     *                    shortest distance weighting.
+     * @return Distance table keyed by target.
+     */
+    public DistanceTable calcFrom(int source, IntArrayList targets, double maxDistance) {
+        return calc(source, targets, false, maxDistance);
+    }
+
+    /**
+     * Returns the shortest path distances from all source nodes to the target node.
+     *
+     * @param sources Start Node IDs. May contain duplicates.
+     * @param target  End Node ID.
+     * @return Distance table keyed by source.
+     */
+    public DistanceTable calcTo(IntArrayList sources, int target) {
+        return calcTo(sources, target, Double.MAX_VALUE);
+    }
+
+    /**
+     * Returns the shortest path distances from all source nodes to the target node within the maximum distance.
+     *
+     * @param sources     Start Node IDs. May contain duplicates.
+     * @param target      End Node ID.
+     * @param maxDistance Maximum distance in meters. Farther sources are treated as unreachable. Requires the
+     *                    shortest distance weighting.
+     * @return Distance table keyed by source.
+     */
+    public DistanceTable calcTo(IntArrayList sources, int target, double maxDistance) {
+        return calc(target, sources, true, maxDistance);
+    }
+
+    private DistanceTable calc(int root, IntArrayList nodes, boolean reverse, double maxDistance) {
+        BidirectionalSearch.checkDistanceBound(weighting, maxDistance);
+        IntDoubleHashMap rootWeights = new IntDoubleHashMap();
+        IntDoubleHashMap rootDistances = new IntDoubleHashMap();
+        upwardSearch(root, reverse, maxDistance, rootWeights, rootDistances);
+
+        // Nodes are appended in post order, so higher nodes always come before the nodes below them
+        IntIntHashMap slots = new IntIntHashMap(nodes.size() * 4);
+        IntArrayList order = new IntArrayList(nodes.size() * 4);
+        for(int i = 0; i < nodes.size(); i++) {
+            select(nodes.get(i), reverse, slots, order, 0);
+        }
+
+        double[] weights = new double[order.size()];
+        double[] distances = new double[order.size()];
+        EdgeExplorer explorer = reverse ? outExplorer : inExplorer;
+        for(int i = 0; i < order.size(); i++) {
+            int node = order.get(i);
+            weights[i] = rootWeights.getOrDefault(node, Double.POSITIVE_INFINITY);
+            distances[i] = rootDistances.getOrDefault(node, Double.POSITIVE_INFINITY);
+
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while(iter.next()) {
+                if(!levelEdgeFilter.accept(iter)) {
+                    continue;
+                }
+
+                int slot = slots.getOrDefault(iter.getAdjNode(), -1);
+                if(slot < 0 || slot >= i || Double.isInfinite(weights[slot])) {
+                    continue;
+                }
+
+                double weight = weights[slot] + weighting.calcWeight(iter, !reverse, EdgeIterator.NO_EDGE);
+                if(weight < weights[i]) {
+                    weights[i] = weight;
+                    distances[i] = distances[slot] + iter.getDistance();
+                }
+            }
+        }
+
+        IntDoubleHashMap result = new IntDoubleHashMap(nodes.size());
+        for(int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            double distance = distances[slots.get(node)];
+            if(distance <= maxDistance) {
+                result.put(node, distance);
+            }
+        }
+
+        return new DistanceTable(result);
+    }
+
+    /**
+     * Settles the upward search space of the specified node up to the maximum distance.
+     */
+    private void upwardSearch(int root, boolean reverse, double maxDistance,
+                              IntDoubleHashMap weights, IntDoubleHashMap distances) {
+        EdgeExplorer explorer = reverse ? inExplorer : outExplorer;
+        MinHeap heap = new MinHeap(64);
+        weights.put(root, 0);
+        distances.put(root, 0);
+        heap.push(root, 0);
+
+        while(!heap.isEmpty()) {
+            double weight = heap.peekKey();
+            int node = heap.poll();
+            if(weight > weights.get(node)) {
+                continue; // Stale heap entry
+            }
+
+            double distance = distances.get(node);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while(iter.next()) {
+                if(!levelEdgeFilter.accept(iter)) {
+                    continue;
+                }
+
+                double newDistance = distance + iter.getDistance();
+                if(newDistance > maxDistance) {
+                    continue;
+                }
+
+                int adj = iter.getAdjNode();
+                double newWeight = weight + weighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+                if(newWeight < weights.getOrDefault(adj, Double.POSITIVE_INFINITY)) {
+                    weights.put(adj, newWeight);
+                    distances.put(adj, newDistance);
+                    heap.push(adj, newWeight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Depth first search going upwards along the edges which can reach the specified node in the original direction.
+     */
+    private void select(int node, boolean reverse, IntIntHashMap slots, IntArrayList order, int depth) {
+        if(slots.containsKey(node)) {
+            return;
+        }
+        slots.put(node, -1); // In progress
+
+        EdgeIterator iter = selectionExplorer(depth, reverse).setBaseNode(node);
+        while(iter.next()) {
+            if(levelEdgeFilter.accept(iter)) {
+                select(iter.getAdjNode(), reverse, slots, order, depth + 1);
+            }
+        }
+
+        slots.put(node, order.size());
+        order.add(node);
+    }
+
+    private EdgeExplorer selectionExplorer(int depth, boolean reverse) {
+        List<EdgeExplorer> explorers = reverse ? outExplorers : inExplorers;
+        while(explorers.size() <= depth) {
+            explorers.add(graph.createEdgeExplorer(reverse ? outFilter : inFilter));
+        }
+        return explorers.get(depth);
+    }
+}
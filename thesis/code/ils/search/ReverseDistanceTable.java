@@ -0,0 +1,105 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Road distances from every node to a fixed target node, computed by one backward Dijkstra search. Searches which
+ * check many nodes against the same target read the distances from the table instead of running a query per node.
+ * <p>
+ * The search stops at a maximum distance, so only nodes within that distance of the target are settled. Labels live
+ * in a pooled {@link SearchWorkspace} and the table can be filled again for another target without allocating.
+ */
+public final class ReverseDistanceTable {
+
+    private final EdgeExplorer inExplorer;
+    private SearchWorkspace workspace;
+
+    /**
+     * @param graph   Graph without shortcuts.
+     * @param encoder Flag encoder used to check edge directions.
+     */
+    public ReverseDistanceTable(@NotNull Graph graph, @NotNull FlagEncoder encoder) {
+        inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        workspace = SearchWorkspace.acquire(graph.getNodes());
+    }
+
+    /**
+     * Fills the table with the distances of all nodes which can reach the target within the maximum distance.
+     *
+     * @param target      Target Node ID.
+     * @param maxDistance Largest distance in meters to settle nodes for.
+     */
+    public void calc(int target, double maxDistance) {
+        calc(target, maxDistance, null);
+    }
+
+    /**
+     * Fills the table like {@link #calc(int, double)} and reports every edge which is part of some path to the target
+     * within the maximum distance.
+     *
+     * @param target      Target Node ID.
+     * @param maxDistance Largest distance in meters to settle nodes for.
+     * @param edges       Receives the edges with the node closer to the target as base node. The state is only valid
+     *                    during the call.
+     */
+    public void calc(int target, double maxDistance, @Nullable Consumer<EdgeIteratorState> edges) {
+        workspace.reset();
+        if(maxDistance < 0) {
+            return;
+        }
+
+        workspace.update(target, 0, 0, target, EdgeIterator.NO_EDGE);
+        workspace.heap.push(target, 0);
+        while(!workspace.heap.isEmpty()) {
+            double distance = workspace.heap.peekKey();
+            int node = workspace.heap.poll();
+            if(distance > workspace.getDistance(node)) {
+                continue; // Stale heap entry
+            }
+
+            EdgeIterator iter = inExplorer.setBaseNode(node);
+            while(iter.next()) {
+                int adj = iter.getAdjNode();
+                double newDistance = distance + iter.getDistance();
+                if(newDistance > maxDistance) {
+                    continue;
+                }
+                if(edges != null) {
+                    edges.accept(iter);
+                }
+                if(!workspace.isVisited(adj) || newDistance < workspace.getDistance(adj)) {
+                    workspace.update(adj, newDistance, newDistance, node, iter.getEdge());
+                    workspace.heap.push(adj, newDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the distance from the specified node to the target of the last {@link #calc(int, double)}.
+     *
+     * @param node Node ID.
+     * @return Distance in meters or {@link Double#MAX_VALUE} if the target can't be reached within the maximum
+     * distance.
+     */
+    public double getDistance(int node) {
+        return workspace.isVisited(node) ? workspace.getDistance(node) : Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns the workspace of this table to the pool of the current thread. The table can't be used afterwards.
+     */
+    public void release() {
+        workspace.release();
+        workspace = null;
+    }
+}
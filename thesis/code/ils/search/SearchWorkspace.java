@@ -0,0 +1,119 @@
+package com.graphhopper.routing.ils.search;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Node indexed labels of a single Dijkstra search which can be reset in constant time. Instead of clearing its arrays
+ * between queries the workspace bumps a version number and treats every label with an older version as unvisited.
+ * <p>
+ * Workspaces are pooled per thread so the algorithm instances created for every request reuse the arrays of the
+ * previous requests instead of allocating new heaps and maps for every query.
+ */
+final class SearchWorkspace {
+
+    private static final ThreadLocal<ArrayDeque<SearchWorkspace>> POOL = new ThreadLocal<ArrayDeque<SearchWorkspace>>() {
+        @Override
+        protected ArrayDeque<SearchWorkspace> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+
+    final MinHeap heap = new MinHeap(256);
+
+    private int[] versions = new int[0];
+    private double[] weights = new double[0];
+    private double[] distances = new double[0];
+    private double[] scores = new double[0]; // Secondary label, only set by searches which track path scores
+    private int[] parentNodes = new int[0];
+    private int[] parentEdges = new int[0];
+    private int version;
+
+    private SearchWorkspace() {
+    }
+
+    /**
+     * Takes a workspace from the pool of the current thread or creates a new one.
+     *
+     * @param nodes Number of nodes of the graph which will be searched.
+     * @return Empty workspace.
+     */
+    static SearchWorkspace acquire(int nodes) {
+        SearchWorkspace workspace = POOL.get().pollFirst();
+        if(workspace == null) {
+            workspace = new SearchWorkspace();
+        }
+        workspace.ensureCapacity(nodes);
+        workspace.reset();
+        return workspace;
+    }
+
+    /**
+     * Returns this workspace to the pool of the current thread. The workspace must not be used afterwards.
+     */
+    void release() {
+        POOL.get().addFirst(this);
+    }
+
+    private void ensureCapacity(int nodes) {
+        if(versions.length >= nodes) {
+            return;
+        }
+
+        versions = Arrays.copyOf(versions, nodes);
+        weights = Arrays.copyOf(weights, nodes);
+        distances = Arrays.copyOf(distances, nodes);
+        scores = Arrays.copyOf(scores, nodes);
+        parentNodes = Arrays.copyOf(parentNodes, nodes);
+        parentEdges = Arrays.copyOf(parentEdges, nodes);
+    }
+
+    /**
+     * Marks all labels as unvisited.
+     */
+    void reset() {
+        heap.clear();
+        version++;
+        if(version == Integer.MAX_VALUE) {
+            Arrays.fill(versions, 0);
+            version = 1;
+        }
+    }
+
+    boolean isVisited(int node) {
+        return versions[node] == version;
+    }
+
+    void update(int node, double weight, double distance, int parentNode, int parentEdge) {
+        update(node, weight, distance, 0, parentNode, parentEdge);
+    }
+
+    void update(int node, double weight, double distance, double score, int parentNode, int parentEdge) {
+        versions[node] = version;
+        weights[node] = weight;
+        distances[node] = distance;
+        scores[node] = score;
+        parentNodes[node] = parentNode;
+        parentEdges[node] = parentEdge;
+    }
+
+    double getWeight(int node) {
+        return weights[node];
+    }
+
+    double getDistance(int node) {
+        return distances[node];
+    }
+
+    double getScore(int node) {
+        return scores[node];
+    }
+
+    int getParentNode(int node) {
+        return parentNodes[node];
+    }
+
+    int getParentEdge(int node) {
+        return parentEdges[node];
+    }
+}
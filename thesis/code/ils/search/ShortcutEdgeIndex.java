@@ -0,0 +1,139 @@
+package com.graphhopper.routing.ils.search;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed index from every shortcut of a Contraction Hierarchy to the original edges it covers. The covered edge
+ * IDs of a shortcut are stored as sorted, disjoint and inclusive [from, to] intervals. Edges are numbered in import
+ * order, so consecutive segments of the same way have consecutive IDs and most shortcuts compress to a few intervals.
+ * <p>
+ * This allows a search on the hierarchy to reject a shortcut touching a blacklisted edge without unpacking it.
+ */
+public final class ShortcutEdgeIndex {
+
+    private final int firstShortcut;
+    private final int[][] intervals; // Indexed by shortcut ID - firstShortcut
+
+    private ShortcutEdgeIndex(int firstShortcut, int[][] intervals) {
+        this.firstShortcut = firstShortcut;
+        this.intervals = intervals;
+    }
+
+    /**
+     * Builds the index for all shortcuts of the specified graph.
+     *
+     * @param chGraph Contraction Hierarchy.
+     * @return New index.
+     */
+    public static ShortcutEdgeIndex build(@NotNull CHGraph chGraph) {
+        int firstShortcut = chGraph.getBaseGraph().getAllEdges().getMaxId();
+        int maxId = chGraph.getAllEdges().getMaxId();
+
+        ShortcutEdgeIndex index = new ShortcutEdgeIndex(firstShortcut, new int[Math.max(0, maxId - firstShortcut)][]);
+        for(int edge = firstShortcut; edge < maxId; edge++) {
+            index.compute(chGraph, edge);
+        }
+        return index;
+    }
+
+    /**
+     * Computes the intervals of an edge, recursing into skipped edges which haven't been computed yet. Skipped edges
+     * usually have smaller IDs than their shortcut but that is not guaranteed once shortcuts get updated during
+     * contraction.
+     */
+    private int[] compute(CHGraph chGraph, int edge) {
+        if(!isShortcut(edge)) {
+            return new int[]{edge, edge};
+        }
+
+        int slot = edge - firstShortcut;
+        if(intervals[slot] == null) {
+            CHEdgeIteratorState shortcut = (CHEdgeIteratorState) chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            intervals[slot] = merge(compute(chGraph, shortcut.getSkippedEdge1()),
+                    compute(chGraph, shortcut.getSkippedEdge2()));
+        }
+        return intervals[slot];
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        IntArrayList result = new IntArrayList(a.length + b.length);
+        int i = 0, j = 0;
+        while(i < a.length || j < b.length) {
+            int from, to;
+            if(j >= b.length || (i < a.length && a[i] <= b[j])) {
+                from = a[i];
+                to = a[i + 1];
+                i += 2;
+            } else {
+                from = b[j];
+                to = b[j + 1];
+                j += 2;
+            }
+
+            int size = result.size();
+            if(size > 0 && from <= result.get(size - 1) + 1) {
+                // Overlapping or adjacent to the previous interval
+                result.set(size - 1, Math.max(to, result.get(size - 1)));
+            } else {
+                result.add(from, to);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Returns whether the specified edge is a shortcut known to this index.
+     */
+    public boolean isShortcut(int edge) {
+        return edge >= firstShortcut && edge - firstShortcut < intervals.length;
+    }
+
+    /**
+     * Returns whether the shortcut covers any of the specified edges.
+     *
+     * @param shortcut    Shortcut ID.
+     * @param sortedEdges Sorted array of original edge IDs.
+     * @return True if at least one of the edges is skipped by the shortcut.
+     */
+    public boolean coversAny(int shortcut, @NotNull int[] sortedEdges) {
+        if(sortedEdges.length == 0) {
+            return false;
+        }
+
+        int[] covered = intervals[shortcut - firstShortcut];
+        for(int i = 0; i < covered.length; i += 2) {
+            // Index of the first edge >= the start of the interval
+            int pos = Arrays.binarySearch(sortedEdges, covered[i]);
+            if(pos >= 0) {
+                return true;
+            }
+            pos = -pos - 1;
+            if(pos < sortedEdges.length && sortedEdges[pos] <= covered[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the shortcut covers any edge of the specified set.
+     *
+     * @param shortcut Shortcut ID.
+     * @param edges    Set of original edge IDs.
+     * @return True if at least one of the edges is skipped by the shortcut.
+     */
+    public boolean coversAny(int shortcut, @NotNull EdgeBitSet edges) {
+        int[] covered = intervals[shortcut - firstShortcut];
+        for(int i = 0; i < covered.length; i += 2) {
+            if(edges.intersects(covered[i], covered[i + 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed score of every shortcut of a Contraction Hierarchy, which is the sum of the scores of the original edges
+ * it covers. Shortcuts carry no road attributes, so without this a search on the hierarchy has to unpack its path to
+ * get the score of it.
+ * <p>
+ * Scores don't depend on the direction of an edge, so one value per shortcut is enough.
+ */
+public final class ShortcutScoreIndex {
+
+    private final int firstShortcut;
+    private final double[] scores; // Indexed by shortcut ID - firstShortcut
+
+    private ShortcutScoreIndex(int firstShortcut, double[] scores) {
+        this.firstShortcut = firstShortcut;
+        this.scores = scores;
+    }
+
+    /**
+     * Builds the index for all shortcuts of the specified graph.
+     *
+     * @param chGraph        Contraction Hierarchy.
+     * @param scoreWeighting Weighting used to score original edges.
+     * @return New index.
+     */
+    public static ShortcutScoreIndex build(@NotNull CHGraph chGraph, @NotNull Weighting scoreWeighting) {
+        int firstShortcut = chGraph.getBaseGraph().getAllEdges().getMaxId();
+        int maxId = chGraph.getAllEdges().getMaxId();
+
+        double[] scores = new double[Math.max(0, maxId - firstShortcut)];
+        Arrays.fill(scores, Double.NaN);
+        ShortcutScoreIndex index = new ShortcutScoreIndex(firstShortcut, scores);
+        for(int edge = firstShortcut; edge < maxId; edge++) {
+            index.compute(chGraph, scoreWeighting, edge);
+        }
+        return index;
+    }
+
+    /**
+     * Computes the score of an edge, recursing into skipped edges which haven't been computed yet.
+     */
+    private double compute(CHGraph chGraph, Weighting scoreWeighting, int edge) {
+        EdgeIteratorState state = chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+        if(!isShortcut(edge)) {
+            return scoreWeighting.calcWeight(state, false, EdgeIterator.NO_EDGE);
+        }
+
+        int slot = edge - firstShortcut;
+        if(Double.isNaN(scores[slot])) {
+            CHEdgeIteratorState shortcut = (CHEdgeIteratorState) state;
+            scores[slot] = compute(chGraph, scoreWeighting, shortcut.getSkippedEdge1()) +
+                    compute(chGraph, scoreWeighting, shortcut.getSkippedEdge2());
+        }
+        return scores[slot];
+    }
+
+    /**
+     * Returns whether the specified edge is a shortcut known to this index.
+     */
+    public boolean isShortcut(int edge) {
+        return edge >= firstShortcut && edge - firstShortcut < scores.length;
+    }
+
+    /**
+     * Returns the summed score of the original edges covered by the shortcut.
+     *
+     * @param shortcut Shortcut ID.
+     * @return Score
+     */
+    public double getScore(int shortcut) {
+        return scores[shortcut - firstShortcut];
+    }
+}
@@ -0,0 +1,61 @@
+package com.graphhopper.routing.ils.search;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Recursively expands shortcuts of a Contraction Hierarchy into the original edges they skip.
+ */
+final class ShortcutUnpacker {
+
+    private final Graph graph;
+    private final boolean hasShortcuts; // Skips the edge lookup when searching a graph without shortcuts
+    private int prevEdge;
+
+    ShortcutUnpacker(Graph graph, boolean hasShortcuts) {
+        this.graph = graph;
+        this.hasShortcuts = hasShortcuts;
+        prevEdge = EdgeIterator.NO_EDGE;
+    }
+
+    /**
+     * Starts a new path. Must be called before visiting the first edge of a path.
+     */
+    void start() {
+        prevEdge = EdgeIterator.NO_EDGE;
+    }
+
+    /**
+     * Passes the original edges of the specified edge to the visitor in travel order.
+     *
+     * @param edgeId  Edge or shortcut ID.
+     * @param adjNode Node the edge is traversed towards.
+     * @param visitor Visitor.
+     */
+    void visit(int edgeId, int adjNode, EdgeVisitor visitor) {
+        EdgeIteratorState state = hasShortcuts ? graph.getEdgeIteratorState(edgeId, adjNode) : null;
+        if(state instanceof CHEdgeIteratorState && ((CHEdgeIteratorState) state).isShortcut()) {
+            CHEdgeIteratorState shortcut = (CHEdgeIteratorState) state;
+            int baseNode = shortcut.getBaseNode();
+            int first = shortcut.getSkippedEdge1();
+            int second = shortcut.getSkippedEdge2();
+
+            // The skipped edge touching the base node comes first
+            EdgeIteratorState firstState = graph.getEdgeIteratorState(first, baseNode);
+            if(firstState == null) {
+                first = second;
+                second = shortcut.getSkippedEdge1();
+                firstState = graph.getEdgeIteratorState(first, baseNode);
+            }
+
+            int middleNode = firstState.getBaseNode();
+            visit(first, middleNode, visitor);
+            visit(second, adjNode, visitor);
+        } else {
+            visitor.next(edgeId, adjNode, prevEdge);
+            prevEdge = edgeId;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.graphhopper.routing.ils.vva;
+
+import com.graphhopper.routing.ils.Deadline;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Depth first search used by the {@link VVAIteratedLocalSearch} to find a path between two nodes. The search keeps an
+ * explicit stack instead of recursing, so deep searches don't grow the call stack. Every depth level reuses its own
+ * {@link EdgeExplorer}, whose iteration state is the position of the search at that level, and the edges of the
+ * current branch are pushed to and popped from the {@link Route} directly.
+ * <p>
+ * Branches are cut by an optimistic bound of the score the remaining budget and depth could still add.
+ * <p>
+ * A search which runs past the deadline of the request gives up as if no path had been found.
+ */
+final class DepthFirstSearch {
+
+    private final Graph graph;
+    private final EdgeFilter edgeFilter;
+    private final Weighting scoreWeighting;
+    private final double minCost;
+    private Deadline deadline = Deadline.none();
+
+    private EdgeExplorer[] explorers = new EdgeExplorer[0];
+    private EdgeIterator[] iterators = new EdgeIterator[0];
+    private int[] nodes = new int[0];
+    private double[] budgets = new double[0];
+
+    // Optimistic score bounds of the edges usable by the current search
+    private double maxEdgeScore = Double.MAX_VALUE;
+    private double maxScoreRate = Double.MAX_VALUE;
+
+    // Number of steps between two checks of the deadline, a power of two
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    /**
+     * @param graph          Graph without shortcuts.
+     * @param edgeFilter     Filter of the edges which can be travelled.
+     * @param scoreWeighting Weighting used to score edges.
+     * @param minCost        Minimum distance of a path in meters.
+     */
+    DepthFirstSearch(@NotNull Graph graph, @NotNull EdgeFilter edgeFilter, @NotNull Weighting scoreWeighting,
+                     double minCost) {
+        this.graph = graph;
+        this.edgeFilter = edgeFilter;
+        this.scoreWeighting = scoreWeighting;
+        this.minCost = minCost;
+    }
+
+    /**
+     * Sets the optimistic bounds used to cut branches for the following searches.
+     *
+     * @param maxEdgeScore Largest score of a single usable edge.
+     * @param maxScoreRate Largest score per meter of a usable edge.
+     */
+    void setScoreBounds(double maxEdgeScore, double maxScoreRate) {
+        this.maxEdgeScore = maxEdgeScore;
+        this.maxScoreRate = maxScoreRate;
+    }
+
+    /**
+     * Sets the deadline which stops the following searches.
+     */
+    void setDeadline(@NotNull Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the largest score a branch could still add with the remaining budget and depth.
+     */
+    private double getScoreBound(double budget, int depth) {
+        return Math.min(depth * maxEdgeScore, budget * maxScoreRate);
+    }
+
+    private void ensureDepth(int maxDepth) {
+        if(explorers.length >= maxDepth) {
+            return;
+        }
+
+        int depth = explorers.length;
+        explorers = Arrays.copyOf(explorers, maxDepth);
+        iterators = Arrays.copyOf(iterators, maxDepth);
+        nodes = Arrays.copyOf(nodes, maxDepth);
+        budgets = Arrays.copyOf(budgets, maxDepth);
+        for(; depth < maxDepth; depth++) {
+            explorers[depth] = graph.createEdgeExplorer(edgeFilter);
+        }
+    }
+
+    /**
+     * Searches for a path from s to d which fits into the distance and beats the minimum profit. Edges are tried in
+     * the order of the graph and the first path found is kept.
+     *
+     * @param route         Route the path is added to.
+     * @param blacklist     Route whose edges may not be used. May be null.
+     * @param s             Start Node ID.
+     * @param d             End Node ID.
+     * @param dist          Allowable budget.
+     * @param minProfit     Minimum required score.
+     * @param maxDepth      Maximum number of edges.
+     * @param distanceToEnd Shortest distance from a node to d, at least as large as the budget if d is out of reach.
+     * @return True if a path was found. Otherwise, also if the deadline has passed, the route is left unchanged.
+     */
+    boolean search(@NotNull Route route, @Nullable Route blacklist, int s, int d, double dist, double minProfit,
+                   int maxDepth, @NotNull IntToDoubleFunction distanceToEnd) {
+        if(maxDepth <= 0) {
+            return false;
+        }
+
+        ensureDepth(maxDepth);
+
+        int depth = 0;
+        nodes[0] = s;
+        budgets[0] = dist;
+        iterators[0] = explorers[0].setBaseNode(s);
+
+        int steps = 0;
+        while(depth >= 0) {
+            // Reading the clock costs more than a single step, so it is only done every few steps
+            if((++steps & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+                for(; depth > 0; depth--) {
+                    route.removeLast();
+                }
+                return false;
+            }
+
+            EdgeIterator edgeIterator = iterators[depth];
+            if(!edgeIterator.next()) {
+                // Level exhausted, backtrack over the edge which led here
+                depth--;
+                if(depth >= 0) {
+                    route.removeLast();
+                }
+                continue;
+            }
+
+            int currentEdge = edgeIterator.getEdge();
+            if(route.containsEdge(currentEdge) || (blacklist != null && blacklist.containsEdge(currentEdge))) {
+                continue;
+            }
+
+            double edgeCost = edgeIterator.getDistance();
+            int nextNode = edgeIterator.getAdjNode();
+            double remainingDist = budgets[depth] - edgeCost;
+            if(distanceToEnd.applyAsDouble(nextNode) >= remainingDist) {
+                continue;
+            }
+
+            double edgeScore = scoreWeighting.calcWeight(edgeIterator, false, nextNode);
+            route.addEdge(currentEdge, nodes[depth], nextNode, edgeCost, edgeScore);
+
+            if(nextNode == d && route.getCost() >= minCost && route.getScore() > minProfit) {
+                return true;
+            }
+
+            int remainingDepth = maxDepth - depth - 1;
+            if(remainingDepth > 0 &&
+                    route.getScore() + getScoreBound(remainingDist, remainingDepth) > minProfit) {
+                depth++;
+                nodes[depth] = nextNode;
+                budgets[depth] = remainingDist;
+                iterators[depth] = explorers[depth].setBaseNode(nextNode);
+            } else {
+                route.removeLast();
+            }
+        }
+
+        return false;
+    }
+}
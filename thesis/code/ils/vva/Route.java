@@ -1,99 +1,239 @@
 package com.graphhopper.routing.ils.vva;
 
-import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.routing.ils.IlsPath;
+import com.graphhopper.routing.ils.search.EdgeBitSet;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Object which represents a path created by the {@link VVAIteratedLocalSearch} algorithm.
+ * <p>
+ * Edges are stored in primitive parallel arrays. Removing and inserting ranges is recorded in an undo log, so a failed
+ * perturbation is rolled back in the number of changed edges instead of working on a copy of the whole route.
  */
 final class Route {
-    private List<Arc> arcs;
-    private IntHashSet edges;
+
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int REMOVE = 0, INSERT = 1;
+
+    private int[] edgeIds = new int[INITIAL_CAPACITY];
+    private int[] baseNodes = new int[INITIAL_CAPACITY];
+    private int[] adjNodes = new int[INITIAL_CAPACITY];
+    private double[] costs = new double[INITIAL_CAPACITY];
+    private double[] scores = new double[INITIAL_CAPACITY];
+    private int length;
+    private final EdgeBitSet edges = new EdgeBitSet();
     private double cost;
     private double score;
 
+    // Undo log, three ints (type, index, count) and the previous cost and score per operation
+    private final IntArrayList log = new IntArrayList();
+    private final DoubleArrayList logTotals = new DoubleArrayList();
+    private final Route removed; // Edges taken out by logged removals, in removal order
+
     Route() {
-        arcs = new ArrayList<>();
-        edges = new IntHashSet();
+        this(true);
+    }
+
+    private Route(boolean logged) {
+        removed = logged ? new Route(false) : null;
     }
 
-    // Copy constructor
-    private Route(Route route) {
-        cost = route.cost;
-        score = route.score;
-        arcs = new ArrayList<>(route.arcs);
-        edges = route.edges.clone();
+    private void ensureCapacity(int capacity) {
+        if(capacity > edgeIds.length) {
+            int newCapacity = Math.max(capacity, edgeIds.length * 2);
+            edgeIds = Arrays.copyOf(edgeIds, newCapacity);
+            baseNodes = Arrays.copyOf(baseNodes, newCapacity);
+            adjNodes = Arrays.copyOf(adjNodes, newCapacity);
+            costs = Arrays.copyOf(costs, newCapacity);
+            scores = Arrays.copyOf(scores, newCapacity);
+        }
     }
 
+    /**
+     * Moves the edges from the specified index onwards by the specified offset.
+     */
+    private void shift(int index, int offset) {
+        int count = length - index;
+        System.arraycopy(edgeIds, index, edgeIds, index + offset, count);
+        System.arraycopy(baseNodes, index, baseNodes, index + offset, count);
+        System.arraycopy(adjNodes, index, adjNodes, index + offset, count);
+        System.arraycopy(costs, index, costs, index + offset, count);
+        System.arraycopy(scores, index, scores, index + offset, count);
+        length += offset;
+    }
 
     void addEdge(int edgeId, int baseNode, int adjNode, double cost, double score) {
-        arcs.add(new Arc(edgeId, baseNode, adjNode, cost, score));
-        edges.add(edgeId);
+        ensureCapacity(length + 1);
+        edgeIds[length] = edgeId;
+        baseNodes[length] = baseNode;
+        adjNodes[length] = adjNode;
+        costs[length] = cost;
+        scores[length] = score;
+        length++;
+        edges.set(edgeId);
         this.cost += cost;
         this.score += score;
     }
 
-    void removeEdge(int edgeId) {
-        for(int i = arcs.size() - 1; i >= 0; i--) {
-            Arc arc = arcs.get(i);
-            if(arc.edgeId == edgeId) {
-                arcs.remove(i);
-                edges.remove(edgeId);
-                cost -= arc.cost;
-                score -= arc.score;
-                break;
+    /**
+     * Removes the last edge of the Route. Used when backtracking.
+     */
+    void removeLast() {
+        length--;
+        edges.clear(edgeIds[length]);
+        cost -= costs[length];
+        score -= scores[length];
+    }
+
+    /**
+     * Removes a range of edges and records it in the undo log.
+     *
+     * @param index Index of the first edge to remove.
+     * @param count Number of edges to remove.
+     */
+    void removeRange(int index, int count) {
+        if(count <= 0) {
+            return;
+        }
+
+        log(REMOVE, index, count);
+        for(int i = index; i < index + count; i++) {
+            removed.addEdge(edgeIds[i], baseNodes[i], adjNodes[i], costs[i], scores[i]);
+            edges.clear(edgeIds[i]);
+            cost -= costs[i];
+            score -= scores[i];
+        }
+        shift(index + count, -count);
+    }
+
+    /**
+     * Inserts all edges of the specified Route at the specified index and records it in the undo log.
+     *
+     * @param other Route to insert.
+     * @param index Index to insert at.
+     */
+    void insertRoute(Route other, int index) {
+        log(INSERT, index, other.length);
+        ensureCapacity(length + other.length);
+        shift(index, other.length);
+        System.arraycopy(other.edgeIds, 0, edgeIds, index, other.length);
+        System.arraycopy(other.baseNodes, 0, baseNodes, index, other.length);
+        System.arraycopy(other.adjNodes, 0, adjNodes, index, other.length);
+        System.arraycopy(other.costs, 0, costs, index, other.length);
+        System.arraycopy(other.scores, 0, scores, index, other.length);
+        for(int i = 0; i < other.length; i++) {
+            edges.set(other.edgeIds[i]);
+        }
+        cost += other.cost;
+        score += other.score;
+    }
+
+    private void log(int type, int index, int count) {
+        log.add(type, index);
+        log.add(count);
+        logTotals.add(cost, score);
+    }
+
+    /**
+     * Returns a checkpoint of the undo log which changes can be rolled back to.
+     */
+    int mark() {
+        return log.size();
+    }
+
+    /**
+     * Undoes all logged changes made after the specified checkpoint, newest first.
+     *
+     * @param mark Checkpoint returned by {@link Route#mark()}.
+     */
+    void rollback(int mark) {
+        while(log.size() > mark) {
+            int top = log.size() - 3;
+            int type = log.get(top);
+            int index = log.get(top + 1);
+            int count = log.get(top + 2);
+
+            if(type == INSERT) {
+                for(int i = index; i < index + count; i++) {
+                    edges.clear(edgeIds[i]);
+                }
+                shift(index + count, -count);
+            } else {
+                ensureCapacity(length + count);
+                shift(index, count);
+                int from = removed.length - count;
+                System.arraycopy(removed.edgeIds, from, edgeIds, index, count);
+                System.arraycopy(removed.baseNodes, from, baseNodes, index, count);
+                System.arraycopy(removed.adjNodes, from, adjNodes, index, count);
+                System.arraycopy(removed.costs, from, costs, index, count);
+                System.arraycopy(removed.scores, from, scores, index, count);
+                for(int i = index; i < index + count; i++) {
+                    edges.set(edgeIds[i]);
+                }
+                for(int i = 0; i < count; i++) {
+                    removed.removeLast();
+                }
             }
+
+            int totals = top / 3 * 2;
+            cost = logTotals.get(totals);
+            score = logTotals.get(totals + 1);
+            log.elementsCount = top;
+            logTotals.elementsCount = totals;
         }
     }
 
-    Arc removeEdgeIndex(int index) {
-        Arc arc = arcs.remove(index);
-        edges.remove(arc.edgeId);
-        cost -= arc.cost;
-        score -= arc.score;
-        return arc;
+    /**
+     * Keeps all logged changes and empties the undo log.
+     */
+    void commit() {
+        log.clear();
+        logTotals.clear();
+        removed.clear();
     }
 
     void clear() {
-        arcs.clear();
-        edges.clear();
+        for(int i = 0; i < length; i++) {
+            edges.clear(edgeIds[i]);
+        }
+        length = 0;
         cost = 0;
         score = 0;
+        if(removed != null) {
+            commit();
+        }
     }
 
-    Route copy() {
-        return new Route(this);
+    boolean containsEdge(int edgeId) {
+        return edges.get(edgeId);
     }
 
-    boolean containsEdge(int edgeId) {
-        return edges.contains(edgeId);
+    int getBaseNode(int index) {
+        return baseNodes[index];
     }
 
-    void insertRoute(Route other, int index) {
-        arcs.addAll(index, other.arcs);
-        edges.addAll(other.edges);
-        cost += other.cost;
-        score += other.score;
+    int getAdjNode(int index) {
+        return adjNodes[index];
     }
 
-    void blacklist(Route other) {
-        edges.addAll(other.edges);
+    double getScore(int index) {
+        return scores[index];
     }
 
     IlsPath getPath(Graph graph, Weighting costWeighting, Weighting scoreWeighting, int s, int d) {
         IlsPath path = new IlsPath(graph, costWeighting, scoreWeighting);
-        for(Arc arc : arcs) {
-            path.processEdge(arc.edgeId, arc.adjNode, arc.edgeId);
+        for(int i = 0; i < length; i++) {
+            path.processEdge(edgeIds[i], adjNodes[i], edgeIds[i]);
         }
         return (IlsPath) path
                 .setEndNode(d)
                 .setFromNode(s)
-                .setFound(!arcs.isEmpty());
+                .setFound(length > 0);
     }
 
     public double getCost() {
@@ -105,7 +245,7 @@ final class Route {
     }
 
     public int length() {
-        return arcs.size();
+        return length;
     }
 
 }
@@ -1,13 +1,18 @@
 package com.graphhopper.routing.ils.vva;
 
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
-import com.graphhopper.routing.DijkstraBidirectionCH;
 import com.graphhopper.routing.Path;
-import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.ils.BikePriorityWeighting;
+import com.graphhopper.routing.ils.Deadline;
 import com.graphhopper.routing.ils.IlsAlgorithm;
+import com.graphhopper.routing.ils.IlsParameters;
 import com.graphhopper.routing.ils.IlsPath;
+import com.graphhopper.routing.ils.IlsStorage;
 import com.graphhopper.routing.ils.Iteration;
+import com.graphhopper.routing.ils.TerminationPolicy;
+import com.graphhopper.routing.ils.search.DistanceMatrix;
+import com.graphhopper.routing.ils.search.ReverseDistanceTable;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
@@ -15,8 +20,15 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntToDoubleFunction;
 
 import static com.graphhopper.util.Parameters.Routing.*;
 
@@ -30,32 +42,77 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
     private final double MIN_COST;
     private final int MAX_DEPTH;
     private final int MAX_ITERATIONS;
-
-    private Graph CHGraph; // CH Dijkstra search
-    private EdgeFilter levelEdgeFilter; // Used for CH Dijkstra search
+    private final long TIME_LIMIT;
+
+    private DepthFirstSearch dfs; // Reused for every local search
+    private ReverseDistanceTable toEnd; // Distances to the end node of the current local search
+    private final IntToDoubleFunction distanceToEnd = this::distanceToEnd;
+    private final Consumer<EdgeIteratorState> usableEdges = this::updateScoreBounds;
+    private int searchEnd; // End node of the current local search
+    private double maxEdgeScore, maxScoreRate; // Score bounds of the edges usable by the current local search
+    private DistanceMatrix matrix; // Null if the graph is too large for all-pairs distances
+    private boolean useMatrix; // Whether the matrix covers the end node of the current local search
+    private double graphEdgeScore, graphScoreRate; // Score bounds of all edges, used with the matrix
     private Weighting scoreWeighting;
 
     private boolean isFinished = false;
     private int s, d;
     private Iteration[] iterations;
-    private EdgeFilter bikeEdgeFilter;
+    private int iterationCount; // Number of iterations which ran
+    private Deadline deadline = Deadline.none(); // Stops the search once the time limit has passed
+    private TerminationPolicy termination; // Stops the search once it has converged
 
     /**
      * @param graph specifies the graph where this algorithm will run on
      */
     public VVAIteratedLocalSearch(Graph graph, Weighting weighting,
                                   EdgeFilter levelEdgeFilter, PMap params) {
+        this(graph, weighting, levelEdgeFilter, new IlsStorage(), params);
+    }
+
+    /**
+     * Creates a new VVA instance. The distances used to prune the depth first search are looked up in the
+     * {@link DistanceMatrix} of the storage if it covers the end node of a local search. Otherwise, for virtual nodes
+     * of a query graph or without a matrix, one backward Dijkstra from the end node computes them.
+     *
+     * @param graph           Graph to run algorithm on.
+     * @param weighting       Weighting to calculate costs.
+     * @param levelEdgeFilter Unused, the search runs on the base graph.
+     * @param storage         Precomputed graph data.
+     * @param params          Parameters map.
+     */
+    public VVAIteratedLocalSearch(Graph graph, Weighting weighting, EdgeFilter levelEdgeFilter,
+                                  @NotNull IlsStorage storage, PMap params) {
         super(graph.getBaseGraph(), weighting, TraversalMode.EDGE_BASED_1DIR);
 
-        CHGraph = graph;
-        this.levelEdgeFilter = levelEdgeFilter;
+        toEnd = new ReverseDistanceTable(this.graph, flagEncoder);
+        matrix = storage.getDistanceMatrix();
         scoreWeighting = new BikePriorityWeighting(flagEncoder);
-        bikeEdgeFilter = new DefaultEdgeFilter(flagEncoder);
 
         MAX_COST = params.getDouble(MAX_DIST, DEFAULT_MAX_DIST);
         MIN_COST = params.getDouble(MIN_DIST, DEFAULT_MIN_DIST);
         MAX_DEPTH = params.getInt(SEARCH_DEPTH, DEFAULT_SEARCH_DEPTH);
         MAX_ITERATIONS = params.getInt(Parameters.Routing.MAX_ITERATIONS, DEFAULT_MAX_ITERATIONS);
+        TIME_LIMIT = params.getLong(IlsParameters.TIME_LIMIT, IlsParameters.DEFAULT_TIME_LIMIT);
+        termination = TerminationPolicy.create(params);
+        dfs = new DepthFirstSearch(this.graph, new DefaultEdgeFilter(flagEncoder), scoreWeighting, MIN_COST);
+        if(matrix != null) {
+            // Without a table per search bound the scores by all edges of the (small) graph once
+            AllEdgesIterator iter = this.graph.getAllEdges();
+            while(iter.next()) {
+                updateScoreBounds(iter);
+            }
+            // Virtual edges are shorter than the edge they split, so they can have a higher score rate
+            EdgeExplorer explorer = this.graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder));
+            for(int node = matrix.getNodes(); node < this.graph.getNodes(); node++) {
+                EdgeIterator edges = explorer.setBaseNode(node);
+                while(edges.next()) {
+                    updateScoreBounds(edges);
+                }
+            }
+            graphEdgeScore = maxEdgeScore;
+            graphScoreRate = maxScoreRate;
+        }
 
         iterations = new Iteration[MAX_ITERATIONS];
     }
@@ -65,7 +122,13 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
         checkAlreadyRun();
         s = from;
         d = to;
-        return runILS();
+        deadline = Deadline.after(TIME_LIMIT);
+        dfs.setDeadline(deadline);
+        try {
+            return runILS();
+        } finally {
+            toEnd.release();
+        }
     }
 
     private Path runILS() {
@@ -84,9 +147,15 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
         Route newPath = new Route();
         int a = 1, r = 1, count = 0;
         while(count < MAX_ITERATIONS) {
-            double score = getPath(solution).getScore();
-            Route temp = solution.copy();
-            int size = temp.length();
+            double score = solution.getScore();
+            Iteration.Stop converged = termination.update(score);
+            if(converged != Iteration.Stop.NONE) {
+                iterations[count] = new Iteration(score, (System.currentTimeMillis() - start) / 1000.0, converged);
+                iterationCount = count + 1;
+                break;
+            }
+
+            int size = solution.length();
 
             if(r > size) {
                 r = 1;
@@ -99,38 +168,43 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
             // Remove arcs a - r
             double minScore = 0;
             int startId = s, endId = d;
-            for(int i = 0; i < r; i++) {
-                Arc arc = temp.removeEdgeIndex(a - 1);
-                minScore += arc.score;
-
-                if(i == 0) {
-                    startId = arc.baseNode;
-                }
-
-                if(i == r - 1) {
-                    endId = arc.adjNode;
+            if(r > 0) {
+                for(int i = a - 1; i < a - 1 + r; i++) {
+                    minScore += solution.getScore(i);
                 }
+                startId = solution.getBaseNode(a - 1);
+                endId = solution.getAdjNode(a - 2 + r);
             }
 
-            // Don't allow search to traverse roads already in our path
-            newPath.blacklist(temp);
-            if(localSearch(newPath, startId, endId, MAX_COST - temp.getCost(),
+            // Remove tentatively so a failed search can be rolled back
+            int mark = solution.mark();
+            solution.removeRange(a - 1, r);
+
+            // Roads still in the solution are skipped by the search
+            if(localSearch(newPath, solution, startId, endId, MAX_COST - solution.getCost(),
                     minScore, MAX_DEPTH)) {
-                temp.insertRoute(newPath, a - 1);
-                solution = temp;
+                solution.insertRoute(newPath, a - 1);
+                solution.commit();
                 a = 1;
                 r = 1;
             } else {
+                solution.rollback(mark);
                 a++;
                 r++;
             }
 
             long elapsed = System.currentTimeMillis() - start;
-            iterations[count] = new Iteration(score, elapsed / 1000.0);
+            count++;
+            Iteration.Stop stop = deadline.isExpired() ? Iteration.Stop.DEADLINE :
+                    count == MAX_ITERATIONS ? Iteration.Stop.MAX_ITERATIONS : Iteration.Stop.NONE;
+            iterations[count - 1] = new Iteration(score, elapsed / 1000.0, stop);
+            iterationCount = count;
+            if(stop != Iteration.Stop.NONE) {
+                break;
+            }
 
             // Clear temp path so we can use it again
             newPath.clear();
-            count++;
         }
 
         return solution;
@@ -139,71 +213,61 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
     private Route initialize() {
         Route route = new Route();
 
-        if(!localSearch(route, s, d, MAX_COST, 0, MAX_DEPTH)) {
+        if(!localSearch(route, null, s, d, MAX_COST, 0, MAX_DEPTH)) {
             route.clear();
         }
 
         return route;
     }
 
-    private boolean localSearch(Route route, int s, int d, double dist,
+    /**
+     * Searches for a path from s to d which fits into the distance and beats the minimum profit.
+     *
+     * @param route     Route the path is added to.
+     * @param blacklist Route whose edges may not be used. May be null.
+     * @param s         Start Node ID.
+     * @param d         End Node ID.
+     * @param dist      Allowable budget.
+     * @param minProfit Minimum required score.
+     * @param maxDepth  Maximum number of edges.
+     * @return True if a path was found.
+     */
+    private boolean localSearch(Route route, @Nullable Route blacklist, int s, int d, double dist,
                                 double minProfit, int maxDepth) {
-        if(maxDepth == 0) {
-            return false;
+        // The end node is fixed for the whole search and budgets only shrink, so one table answers every check
+        searchEnd = d;
+        useMatrix = matrix != null && matrix.contains(d);
+        if(useMatrix) {
+            dfs.setScoreBounds(graphEdgeScore, graphScoreRate);
+        } else {
+            maxEdgeScore = 0;
+            maxScoreRate = 0;
+            toEnd.calc(d, dist, usableEdges);
+            dfs.setScoreBounds(maxEdgeScore, maxScoreRate);
         }
+        return dfs.search(route, blacklist, s, d, dist, minProfit, maxDepth, distanceToEnd);
+    }
 
-        // Using edgeExplorer from baseGraph for traversal (non-CH version)
-        EdgeExplorer explorer = graph.createEdgeExplorer(bikeEdgeFilter);
-        EdgeIterator edgeIterator = explorer.setBaseNode(s);
-
-        while(edgeIterator.next()) {
-            int currentEdge = edgeIterator.getEdge();
-
-            if(route.containsEdge(currentEdge)) {
-                continue;
-            }
-
-            double edgeCost = edgeIterator.getDistance();
-            int nextNode = edgeIterator.getAdjNode();
-
-            double remainingDist = dist - edgeCost;
-            double shortestDist = shortestPath(nextNode, d);
-
-            if(shortestDist >= remainingDist) {
-                continue;
-            }
-
-            double edgeScore = scoreWeighting
-                    .calcWeight(edgeIterator, false, nextNode);
-
-            route.addEdge(currentEdge, s, nextNode, edgeCost, edgeScore);
-
-            if(nextNode == d &&
-                    route.getCost() >= MIN_COST &&
-                    route.getScore() > minProfit) {
-                return true;
-            } else if(localSearch(route, nextNode, d, remainingDist,
-                    minProfit, maxDepth - 1)) {
-                return true;
-            }
-
-            route.removeEdge(currentEdge);
+    /**
+     * Returns the shortest distance in meters from a node to the end node of the current local search or
+     * {@link Double#MAX_VALUE} if it can't be reached within the budget of the search.
+     */
+    private double distanceToEnd(int node) {
+        if(!useMatrix) {
+            return toEnd.getDistance(node);
         }
-
-        return false;
+        // Virtual nodes aren't in the matrix, a distance of 0 never cuts their branch
+        return matrix.contains(node) ? matrix.getDistance(node, searchEnd) : 0;
     }
 
     /**
-     * Returns the shortest distance in meters between two nodes of the graph.
+     * Raises the score bounds of the depth first search to cover the specified edge.
      */
-    private double shortestPath(int s, int d) {
-        RoutingAlgorithm search =
-                new DijkstraBidirectionCH(CHGraph,
-                        weighting, TraversalMode.NODE_BASED)
-                        .setEdgeFilter(levelEdgeFilter);
-
-        Path path = search.calcPath(s, d);
-        return path.getDistance();
+    private void updateScoreBounds(EdgeIteratorState edge) {
+        double score = scoreWeighting.calcWeight(edge, false, edge.getAdjNode());
+        double distance = edge.getDistance();
+        maxEdgeScore = Math.max(maxEdgeScore, score);
+        maxScoreRate = Math.max(maxScoreRate, distance > 0 ? score / distance : Double.MAX_VALUE);
     }
 
     // Unused
@@ -225,6 +289,6 @@ public class VVAIteratedLocalSearch extends AbstractRoutingAlgorithm implements
 
     @Override
     public Iteration[] getIterationInfo() {
-        return iterations;
+        return Arrays.copyOf(iterations, iterationCount);
     }
 }
@@ -0,0 +1,115 @@
+package com.graphhopper.routing.ils;
+
+import com.graphhopper.util.PMap;
+import org.junit.Test;
+
+import static com.graphhopper.routing.ils.Iteration.Stop.*;
+import static org.junit.Assert.*;
+
+public class TerminationPolicyTest {
+
+    /**
+     * Feeds the scores to the policy and returns the reason of the last update.
+     */
+    private static Iteration.Stop feed(TerminationPolicy policy, double... scores) {
+        Iteration.Stop stop = NONE;
+        for(double score : scores) {
+            stop = policy.update(score);
+        }
+        return stop;
+    }
+
+    @Test
+    public void testStagnationNeedsFullWindow() {
+        TerminationPolicy policy = new TerminationPolicy.Stagnation(3, 0.1);
+        assertEquals(NONE, policy.update(10));
+        assertEquals(NONE, policy.update(10));
+        assertEquals(NONE, policy.update(10));
+        // The fourth score is the first one with a score three iterations back to compare to
+        assertEquals(STAGNATION, policy.update(10));
+    }
+
+    @Test
+    public void testStagnationThreshold() {
+        assertEquals(STAGNATION, feed(new TerminationPolicy.Stagnation(3, 0.1), 10, 10, 10, 10.5));
+        assertEquals(NONE, feed(new TerminationPolicy.Stagnation(3, 0.1), 10, 10, 10, 12));
+    }
+
+    @Test
+    public void testStagnationWindowOfOne() {
+        TerminationPolicy policy = new TerminationPolicy.Stagnation(1, 0.1);
+        assertEquals(NONE, policy.update(10));
+        assertEquals(NONE, policy.update(20));
+        assertEquals(NONE, policy.update(30));
+        assertEquals(STAGNATION, policy.update(30));
+    }
+
+    @Test
+    public void testStagnationWrapsAround() {
+        TerminationPolicy policy = new TerminationPolicy.Stagnation(3, 0.1);
+        // Doubling scores fill the ring buffer several times over without stopping
+        double score = 1;
+        for(int i = 0; i < 20; i++) {
+            assertEquals(NONE, policy.update(score));
+            score *= 2;
+        }
+
+        // Once the score stays flat it stops exactly one window after the last improvement
+        double last = score / 2;
+        assertEquals(NONE, policy.update(last));
+        assertEquals(NONE, policy.update(last));
+        assertEquals(STAGNATION, policy.update(last));
+    }
+
+    @Test
+    public void testStagnationUsesBestScore() {
+        // Worse solutions don't lower the best score, so going back to it isn't an improvement
+        assertEquals(STAGNATION, feed(new TerminationPolicy.Stagnation(3, 0.1), 10, 1, 10, 1));
+        assertEquals(STAGNATION, feed(new TerminationPolicy.Stagnation(3, 0.1), 10, 5, 5, 5));
+    }
+
+    @Test
+    public void testStagnationNonPositiveScores() {
+        // Without a positive score to relate to, the improvement is absolute
+        assertEquals(STAGNATION, feed(new TerminationPolicy.Stagnation(3, 0.1), 0, 0, 0, 0.05));
+        assertEquals(NONE, feed(new TerminationPolicy.Stagnation(3, 0.1), 0, 0, 0, 0.5));
+        assertEquals(NONE, feed(new TerminationPolicy.Stagnation(3, 0.1), -5, -5, -5, -4));
+    }
+
+    @Test
+    public void testNoImprovement() {
+        TerminationPolicy policy = new TerminationPolicy.NoImprovement(2);
+        assertEquals(NONE, policy.update(5));
+        assertEquals(NONE, policy.update(5));
+        assertEquals(NONE, policy.update(6));
+        assertEquals(NONE, policy.update(4));
+        assertEquals(NO_IMPROVEMENT, policy.update(6));
+    }
+
+    @Test
+    public void testTargetScore() {
+        TerminationPolicy policy = new TerminationPolicy.TargetScore(10);
+        assertEquals(NONE, policy.update(9.9));
+        assertEquals(TARGET_SCORE, policy.update(10));
+    }
+
+    @Test
+    public void testCreateDefaultsToNever() {
+        assertSame(TerminationPolicy.NEVER, TerminationPolicy.create(new PMap()));
+    }
+
+    @Test
+    public void testCreateCombinedSeesEveryScore() {
+        PMap params = new PMap()
+                .put(IlsParameters.STOP_TARGET_SCORE, 100)
+                .put(IlsParameters.STOP_NO_IMPROVEMENT, 2);
+        TerminationPolicy policy = TerminationPolicy.create(params);
+
+        assertEquals(NONE, policy.update(50));
+        assertEquals(NONE, policy.update(40));
+        assertEquals(TARGET_SCORE, policy.update(100));
+        // No improvement saw the target score as well, otherwise 99 would count as a better score
+        assertEquals(NONE, policy.update(99));
+        assertEquals(NO_IMPROVEMENT, policy.update(99));
+    }
+}
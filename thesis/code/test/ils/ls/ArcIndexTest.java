@@ -0,0 +1,152 @@
+package com.graphhopper.routing.ils.ls;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.routing.util.BikeFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ArcIndexTest {
+
+    private static final int SHORT = 0, DIAGONAL = 1, FAR = 2, PILLAR = 3, PRIMARY = 4;
+
+    private BikeFlagEncoder encoder;
+    private GraphHopperStorage graph;
+    private ArcIndex index;
+
+    /**
+     * Small graph in a grid of 0.01 degree cells. The diagonal edge spans many cells, the pillar edge has a pillar node
+     * outside of the line between its tower nodes and the primary road scores lower than the cycleways.
+     */
+    @Before
+    public void setUp() {
+        encoder = new BikeFlagEncoder();
+        graph = new GraphBuilder(new EncodingManager(encoder)).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50.000, 10.000);
+        na.setNode(1, 50.000, 10.005);
+        na.setNode(2, 50.002, 10.000);
+        na.setNode(3, 50.035, 10.045);
+        na.setNode(4, 50.050, 10.050);
+        na.setNode(5, 50.055, 10.055);
+        na.setNode(6, 50.020, 10.020);
+        na.setNode(7, 50.020, 10.024);
+        na.setNode(8, 50.001, 10.001);
+        na.setNode(9, 50.001, 10.004);
+
+        long cycleway = flags("cycleway");
+        graph.edge(0, 1).setDistance(400).setFlags(cycleway);
+        graph.edge(2, 3).setDistance(5000).setFlags(cycleway);
+        graph.edge(4, 5).setDistance(700).setFlags(cycleway);
+        graph.edge(6, 7).setDistance(600).setFlags(cycleway)
+                .setWayGeometry(Helper.createPointList(50.025, 10.022));
+        graph.edge(8, 9).setDistance(300).setFlags(flags("primary"));
+
+        index = ArcIndex.build(ArcCatalog.build(graph, encoder), 0.01);
+    }
+
+    private long flags(String highway) {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", highway);
+        return encoder.handleWayTags(way, encoder.acceptWay(way), 0);
+    }
+
+    /**
+     * Runs a query and returns the sorted edge IDs of the result.
+     */
+    private int[] query(ArcIndex index, BBox bbox, double minScore, double minLength) {
+        IntArrayList result = new IntArrayList();
+        index.query(bbox, minScore, minLength, result);
+        int[] edges = new int[result.size()];
+        for(int i = 0; i < result.size(); i++) {
+            edges[i] = index.getCatalog().getEdge(result.get(i));
+        }
+        Arrays.sort(edges);
+        return edges;
+    }
+
+    private int[] query(BBox bbox) {
+        return query(index, bbox, 0, 0);
+    }
+
+    @Test
+    public void testQueryAll() {
+        // Every arc is reported exactly once, even those stored in several cells
+        assertArrayEquals(new int[]{SHORT, DIAGONAL, FAR, PILLAR, PRIMARY},
+                query(new BBox(9.9, 10.1, 49.9, 50.1)));
+    }
+
+    @Test
+    public void testQueryDropsArcsOutsideOfBox() {
+        // The primary road shares the cell but not the box
+        assertArrayEquals(new int[]{SHORT}, query(new BBox(9.9995, 10.006, 49.9995, 50.0005)));
+    }
+
+    @Test
+    public void testQueryInsideOfLargeArc() {
+        // The box lies away from the first cell of the diagonal, which still has to be reported once
+        assertArrayEquals(new int[]{DIAGONAL}, query(new BBox(10.030, 10.032, 50.028, 50.030)));
+        assertArrayEquals(new int[]{DIAGONAL, PILLAR}, query(new BBox(10.012, 10.043, 50.012, 50.033)));
+    }
+
+    @Test
+    public void testQueryIncludesPillarNodes() {
+        // Only the pillar node of the edge lies this far north
+        assertArrayEquals(new int[]{DIAGONAL, PILLAR}, query(new BBox(10.0215, 10.0225, 50.0235, 50.0245)));
+    }
+
+    @Test
+    public void testQueryOutsideOfGrid() {
+        assertArrayEquals(new int[0], query(new BBox(11, 12, 60, 61)));
+        assertArrayEquals(new int[0], query(new BBox(8, 9, 40, 41)));
+        // Boxes reaching past the grid are clamped to its border cells
+        assertArrayEquals(new int[]{FAR}, query(new BBox(10.049, 11, 50.049, 51)));
+    }
+
+    @Test
+    public void testQueryMinLength() {
+        assertArrayEquals(new int[]{DIAGONAL}, query(index, new BBox(9.9, 10.1, 49.9, 50.1), 0, 1000));
+        assertArrayEquals(new int[]{SHORT, DIAGONAL, FAR, PILLAR},
+                query(index, new BBox(9.9, 10.1, 49.9, 50.1), 0, 400));
+    }
+
+    @Test
+    public void testQueryMinScore() {
+        ArcCatalog catalog = index.getCatalog();
+        double cyclewayScore = catalog.getScore(catalog.indexOf(SHORT));
+        assertTrue(cyclewayScore > catalog.getScore(catalog.indexOf(PRIMARY)));
+
+        assertArrayEquals(new int[]{SHORT, DIAGONAL, FAR, PILLAR},
+                query(index, new BBox(9.9, 10.1, 49.9, 50.1), cyclewayScore, 0));
+    }
+
+    @Test
+    public void testCellSizes() {
+        // A single cell and cells smaller than every arc give the same results
+        for(double cellSize : new double[]{1, 0.001}) {
+            ArcIndex other = ArcIndex.build(index.getCatalog(), cellSize);
+            assertArrayEquals(new int[]{SHORT, DIAGONAL, FAR, PILLAR, PRIMARY},
+                    query(other, new BBox(9.9, 10.1, 49.9, 50.1), 0, 0));
+            assertArrayEquals(new int[]{DIAGONAL, PILLAR},
+                    query(other, new BBox(10.012, 10.043, 50.012, 50.033), 0, 0));
+        }
+    }
+
+    @Test
+    public void testEmptyCatalog() {
+        BikeFlagEncoder emptyEncoder = new BikeFlagEncoder();
+        GraphHopperStorage empty = new GraphBuilder(new EncodingManager(emptyEncoder)).create();
+        ArcIndex emptyIndex = ArcIndex.build(ArcCatalog.build(empty, emptyEncoder));
+        assertArrayEquals(new int[0], query(emptyIndex, new BBox(9.9, 10.1, 49.9, 50.1), 0, 0));
+    }
+}
@@ -0,0 +1,108 @@
+package com.graphhopper.routing.ils.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EdgeBitSetTest {
+
+    @Test
+    public void testEmpty() {
+        EdgeBitSet set = new EdgeBitSet();
+        assertFalse(set.get(0));
+        assertFalse(set.get(1_000_000));
+        assertFalse(set.intersects(0, 1_000_000));
+
+        // Clearing an edge past the end must not grow or fail
+        set.clear(1_000_000);
+        assertFalse(set.get(1_000_000));
+    }
+
+    @Test
+    public void testSetGetClear() {
+        EdgeBitSet set = new EdgeBitSet();
+        int[] edges = {0, 1, 63, 64, 65, 127, 128, 5000};
+        for(int edge : edges) {
+            set.set(edge);
+        }
+        for(int edge : edges) {
+            assertTrue(set.get(edge));
+        }
+        assertFalse(set.get(2));
+        assertFalse(set.get(62));
+        assertFalse(set.get(129));
+        assertFalse(set.get(4999));
+
+        set.clear(64);
+        assertFalse(set.get(64));
+        assertTrue(set.get(63));
+        assertTrue(set.get(65));
+
+        // Setting twice and clearing twice is idempotent
+        set.set(5000);
+        assertTrue(set.get(5000));
+        set.clear(5000);
+        set.clear(5000);
+        assertFalse(set.get(5000));
+    }
+
+    @Test
+    public void testGrowKeepsBits() {
+        EdgeBitSet set = new EdgeBitSet();
+        set.set(3);
+        set.set(70);
+        set.set(100_000);
+        assertTrue(set.get(3));
+        assertTrue(set.get(70));
+        assertTrue(set.get(100_000));
+    }
+
+    @Test
+    public void testIntersectsBounds() {
+        EdgeBitSet set = new EdgeBitSet();
+        set.set(63);
+
+        // Both ends of the range are inclusive
+        assertTrue(set.intersects(63, 63));
+        assertTrue(set.intersects(0, 63));
+        assertTrue(set.intersects(63, 200));
+        assertFalse(set.intersects(0, 62));
+        assertFalse(set.intersects(64, 200));
+    }
+
+    @Test
+    public void testIntersectsAcrossWords() {
+        EdgeBitSet set = new EdgeBitSet();
+        set.set(10);
+        set.set(200);
+
+        assertTrue(set.intersects(60, 200));
+        assertTrue(set.intersects(5, 130));
+        assertFalse(set.intersects(11, 199));
+        assertFalse(set.intersects(64, 191));
+
+        // Last bit of a word
+        set.set(127);
+        assertTrue(set.intersects(100, 127));
+        assertTrue(set.intersects(127, 128));
+        assertFalse(set.intersects(128, 199));
+    }
+
+    @Test
+    public void testIntersectsPastEnd() {
+        EdgeBitSet set = new EdgeBitSet();
+        set.set(5);
+
+        assertTrue(set.intersects(0, 1_000_000));
+        assertFalse(set.intersects(6, 1_000_000));
+        assertFalse(set.intersects(500, 1_000_000));
+    }
+
+    @Test
+    public void testIntersectsAfterClear() {
+        EdgeBitSet set = new EdgeBitSet();
+        set.set(42);
+        set.clear(42);
+        assertFalse(set.intersects(0, 100));
+    }
+}
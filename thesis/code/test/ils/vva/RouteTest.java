@@ -0,0 +1,179 @@
+package com.graphhopper.routing.ils.vva;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteTest {
+
+    private Route route;
+
+    /**
+     * Route 0 -> 1 -> 2 -> 3 -> 4 -> 5, edge i has cost i + 1 and score 10 * (i + 1).
+     */
+    @Before
+    public void setUp() {
+        route = new Route();
+        for(int i = 0; i < 5; i++) {
+            route.addEdge(i, i, i + 1, i + 1, 10 * (i + 1));
+        }
+    }
+
+    /**
+     * Creates a detour over the edges starting at the specified edge ID.
+     */
+    private static Route detour(int firstEdge, int count, int from, int to) {
+        Route detour = new Route();
+        int node = from;
+        for(int i = 0; i < count; i++) {
+            int next = i == count - 1 ? to : 100 + firstEdge + i;
+            detour.addEdge(firstEdge + i, node, next, 2, 1);
+            node = next;
+        }
+        return detour;
+    }
+
+    private static void assertOriginal(Route route) {
+        assertEquals(5, route.length());
+        assertEquals(15, route.getCost(), 1e-9);
+        assertEquals(150, route.getScore(), 1e-9);
+        for(int i = 0; i < 5; i++) {
+            assertTrue(route.containsEdge(i));
+            assertEquals(i, route.getBaseNode(i));
+            assertEquals(i + 1, route.getAdjNode(i));
+            assertEquals(10 * (i + 1), route.getScore(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testRemoveRangeRollback() {
+        int mark = route.mark();
+        route.removeRange(1, 2);
+
+        assertEquals(3, route.length());
+        assertEquals(10, route.getCost(), 1e-9);
+        assertEquals(100, route.getScore(), 1e-9);
+        assertFalse(route.containsEdge(1));
+        assertFalse(route.containsEdge(2));
+        assertEquals(0, route.getBaseNode(0));
+        assertEquals(3, route.getBaseNode(1));
+
+        route.rollback(mark);
+        assertOriginal(route);
+    }
+
+    @Test
+    public void testInsertRouteRollback() {
+        int mark = route.mark();
+        route.insertRoute(detour(20, 3, 2, 2), 2);
+
+        assertEquals(8, route.length());
+        assertEquals(21, route.getCost(), 1e-9);
+        assertTrue(route.containsEdge(21));
+        assertEquals(2, route.getBaseNode(2));
+        assertEquals(2, route.getBaseNode(5));
+
+        route.rollback(mark);
+        assertOriginal(route);
+        assertFalse(route.containsEdge(20));
+        assertFalse(route.containsEdge(21));
+        assertFalse(route.containsEdge(22));
+    }
+
+    @Test
+    public void testReplaceRangeRollback() {
+        // A VVA perturbation removes a sub path and inserts a detour between the same nodes
+        int mark = route.mark();
+        route.removeRange(1, 3);
+        route.insertRoute(detour(20, 2, 1, 4), 1);
+
+        assertEquals(4, route.length());
+        assertEquals(1 + 4 + 5, route.getCost(), 1e-9);
+        assertEquals(1, route.getBaseNode(1));
+        assertEquals(4, route.getAdjNode(2));
+
+        route.rollback(mark);
+        assertOriginal(route);
+    }
+
+    @Test
+    public void testNestedMarksRollbackNewestFirst() {
+        int first = route.mark();
+        route.removeRange(0, 1);
+        int second = route.mark();
+        route.removeRange(2, 2);
+        route.insertRoute(detour(30, 1, 3, 5), 2);
+
+        route.rollback(second);
+        assertEquals(4, route.length());
+        assertEquals(14, route.getCost(), 1e-9);
+        assertFalse(route.containsEdge(0));
+        assertFalse(route.containsEdge(30));
+        for(int i = 0; i < 4; i++) {
+            assertEquals(i + 1, route.getBaseNode(i));
+        }
+
+        route.rollback(first);
+        assertOriginal(route);
+    }
+
+    @Test
+    public void testRollbackWithoutChanges() {
+        int mark = route.mark();
+        route.rollback(mark);
+        assertOriginal(route);
+    }
+
+    @Test
+    public void testEmptyRangeIsNotLogged() {
+        int mark = route.mark();
+        route.removeRange(2, 0);
+        assertEquals(mark, route.mark());
+        assertOriginal(route);
+    }
+
+    @Test
+    public void testCommitKeepsChanges() {
+        route.removeRange(1, 2);
+        route.commit();
+        assertEquals(0, route.mark());
+
+        route.rollback(0);
+        assertEquals(3, route.length());
+        assertFalse(route.containsEdge(1));
+
+        // Removed edges of a committed change must not be restored by a later rollback
+        int mark = route.mark();
+        route.removeRange(0, 1);
+        route.rollback(mark);
+        assertEquals(3, route.length());
+        assertEquals(0, route.getBaseNode(0));
+        assertEquals(3, route.getBaseNode(1));
+    }
+
+    @Test
+    public void testRollbackBeyondInitialCapacity() {
+        int mark = route.mark();
+        route.insertRoute(detour(1000, 40, 2, 2), 2);
+        route.removeRange(0, 44);
+        assertEquals(1, route.length());
+
+        route.rollback(mark);
+        assertOriginal(route);
+        assertFalse(route.containsEdge(1000));
+        assertFalse(route.containsEdge(1039));
+    }
+
+    @Test
+    public void testClear() {
+        route.removeRange(0, 2);
+        route.clear();
+        assertEquals(0, route.length());
+        assertEquals(0, route.getCost(), 1e-9);
+        assertEquals(0, route.mark());
+        for(int i = 0; i < 5; i++) {
+            assertFalse(route.containsEdge(i));
+        }
+    }
+}